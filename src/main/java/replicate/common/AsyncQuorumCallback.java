@@ -12,6 +12,8 @@ import java.util.function.Predicate;
 
 /**
  * Completes the associated future once quorum predicate succeeds.
+ * Responses arrive on the update queue thread, while send failures
+ * can be reported from the peer sender threads.
  */
 public class AsyncQuorumCallback<T> implements RequestCallback<T> {
     private final int totalResponses;
@@ -36,7 +38,7 @@ public class AsyncQuorumCallback<T> implements RequestCallback<T> {
     }
 
     @Override
-    public void onResponse(T r, InetAddressAndPort fromAddress) {
+    public synchronized void onResponse(T r, InetAddressAndPort fromAddress) {
         responses.put(fromAddress, r);
         tryCompletingFuture();
     }
@@ -58,7 +60,7 @@ public class AsyncQuorumCallback<T> implements RequestCallback<T> {
     }
 
     @Override
-    public void onError(Exception e) {
+    public synchronized void onError(Exception e) {
         exceptions.add(e);
         tryCompletingFuture();
     }
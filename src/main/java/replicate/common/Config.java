@@ -1,5 +1,10 @@
 package replicate.common;
 
+import replicate.net.BoundedByteBufferReceive;
+import replicate.net.TransportType;
+import replicate.singularupdatequeue.BatchingSingularUpdateQueue;
+import replicate.singularupdatequeue.WaitStrategy;
+
 import java.io.File;
 import java.time.Duration;
 import java.util.Collections;
@@ -18,6 +23,38 @@ public class Config {
     private long followerTimeoutMs = 5000l;
     private boolean supportLogGroup = false;
     private boolean doAsyncRepair = false;
+    private TransportType transportType = TransportType.BLOCKING;
+    //messages delivered in process are still encoded and decoded, to check they survive the wire.
+    private boolean encodeInProcessFrames = false;
+    //0 sends messages to peers on the caller thread.
+    private int peerOutboundQueueSize = 0;
+    //messages queued for a peer are sent together in a BatchRequest. 1 sends each in its own frame.
+    //Batching is done by the per peer senders, so it needs peerOutboundQueueSize.
+    private int maxBatchSize = 1;
+    private long maxBatchWaitTimeNanos = Duration.ofMillis(1).toNanos();
+    //0 does all the socket I/O on the listener thread.
+    private int selectorThreads = 0;
+    private int dispatchThreads = Runtime.getRuntime().availableProcessors();
+    private int maxFrameSize = BoundedByteBufferReceive.DEFAULT_MAX_FRAME_SIZE;
+    private WireFormat wireFormat = WireFormat.BINARY;
+    //bodies of peer messages of at least this many bytes are deflated. 0 disables compression.
+    private int compressionThresholdBytes = 0;
+    //bytes waiting to be written to a connection before it stops accepting more requests.
+    private long outboundHighWatermarkBytes = 1024 * 1024;
+    private long outboundLowWatermarkBytes = 256 * 1024;
+    private int updateQueueCapacity = BatchingSingularUpdateQueue.DEFAULT_CAPACITY;
+    //messages the update thread takes from its queue per wakeup. Handlers see them as one batch.
+    private int updateQueueMaxDrainSize = 64;
+    //update threads handling the messages partitioned by key, next to the update thread handling the rest. 0 handles all on one thread.
+    private int updateQueueLanes = 0;
+    //null queues messages on an ArrayBlockingQueue. Otherwise on an MpscRingBuffer waiting this way.
+    private WaitStrategy updateQueueWaitStrategy = null;
+    //threads decoding messages before they are queued for the update thread. 0 decodes them on the update thread.
+    private int decodeThreads = 0;
+    //threads encoding and sending the messages and responses the update thread sends. 0 does it on the update thread.
+    private int encodeThreads = 0;
+    //how long a request to a peer waits for its response, unless sent with its own timeout.
+    private Duration requestTimeout = Duration.ofSeconds(100);
 
     public Config(String walDir) {
         this.walDir = walDir;
@@ -139,9 +176,23 @@ public class Config {
         return 2000;
     }
 
-    public long getMaxBatchWaitTime() {
-        return Duration.ofMillis(1).toNanos();
+    public Config withMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
 
+    //how long a sender waits for more messages to fill a batch.
+    public Config withMaxBatchWaitTime(Duration maxBatchWaitTime) {
+        this.maxBatchWaitTimeNanos = maxBatchWaitTime.toNanos();
+        return this;
+    }
+
+    public long getMaxBatchWaitTime() {
+        return maxBatchWaitTimeNanos;
     }
 
     public void setAsyncReadRepair() {
@@ -155,4 +206,155 @@ public class Config {
     public void setServerId(Integer serverId) {
         this.serverId = serverId;
     }
+
+    public Config withTransport(TransportType transportType) {
+        this.transportType = transportType;
+        return this;
+    }
+
+    public TransportType getTransportType() {
+        return transportType;
+    }
+
+    public Config withInProcessFrameEncoding() {
+        this.encodeInProcessFrames = true;
+        return this;
+    }
+
+    public boolean encodeInProcessFrames() {
+        return encodeInProcessFrames;
+    }
+
+    public Config withPeerOutboundQueueSize(int peerOutboundQueueSize) {
+        this.peerOutboundQueueSize = peerOutboundQueueSize;
+        return this;
+    }
+
+    public int getPeerOutboundQueueSize() {
+        return peerOutboundQueueSize;
+    }
+
+    public Config withSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+        return this;
+    }
+
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public Config withDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+        return this;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public Config withMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+        return this;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public Config withOutboundWatermarks(long lowWatermarkBytes, long highWatermarkBytes) {
+        this.outboundLowWatermarkBytes = lowWatermarkBytes;
+        this.outboundHighWatermarkBytes = highWatermarkBytes;
+        return this;
+    }
+
+    public long getOutboundLowWatermarkBytes() {
+        return outboundLowWatermarkBytes;
+    }
+
+    public long getOutboundHighWatermarkBytes() {
+        return outboundHighWatermarkBytes;
+    }
+
+    public Config withWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+        return this;
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public Config withCompressionThreshold(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+        return this;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public Config withRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public Config withUpdateQueueCapacity(int updateQueueCapacity) {
+        this.updateQueueCapacity = updateQueueCapacity;
+        return this;
+    }
+
+    public int getUpdateQueueCapacity() {
+        return updateQueueCapacity;
+    }
+
+    public Config withUpdateQueueMaxDrainSize(int updateQueueMaxDrainSize) {
+        this.updateQueueMaxDrainSize = updateQueueMaxDrainSize;
+        return this;
+    }
+
+    public int getUpdateQueueMaxDrainSize() {
+        return updateQueueMaxDrainSize;
+    }
+
+    public Config withRingBufferUpdateQueue(WaitStrategy waitStrategy) {
+        this.updateQueueWaitStrategy = waitStrategy;
+        return this;
+    }
+
+    public boolean usesRingBufferUpdateQueue() {
+        return updateQueueWaitStrategy != null;
+    }
+
+    public WaitStrategy getUpdateQueueWaitStrategy() {
+        return updateQueueWaitStrategy;
+    }
+
+    public Config withUpdateQueueLanes(int updateQueueLanes) {
+        this.updateQueueLanes = updateQueueLanes;
+        return this;
+    }
+
+    public int getUpdateQueueLanes() {
+        return updateQueueLanes;
+    }
+
+    //Splits message handling into a parallel decode stage, the update thread and a parallel encode and send stage.
+    //Each stage thread has a queue of updateQueueCapacity.
+    public Config withPipelineStages(int decodeThreads, int encodeThreads) {
+        this.decodeThreads = decodeThreads;
+        this.encodeThreads = encodeThreads;
+        return this;
+    }
+
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
+
+    public int getEncodeThreads() {
+        return encodeThreads;
+    }
 }
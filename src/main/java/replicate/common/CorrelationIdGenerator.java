@@ -0,0 +1,67 @@
+package replicate.common;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+/**
+ * Hands out the correlation ids a replica uses to match responses to its requests.
+ * Ids only need to be unique among the requests pending on one replica,
+ * so a counter per replica is enough, and allocating one is a single atomic increment.
+ *
+ * Ids are never negative, as -1 is the id of the BatchRequest envelope.
+ * After Integer.MAX_VALUE, ids start again from 0. From then on, ids still in use by
+ * a pending request are skipped, so a new request never replaces the callback
+ * of an older one.
+ */
+public class CorrelationIdGenerator {
+    private static Logger logger = LogManager.getLogger(CorrelationIdGenerator.class);
+
+    //keeps counting past Integer.MAX_VALUE, so it shows when ids start to be reused.
+    private final AtomicLong nextId;
+    private final IntPredicate isPending;
+    private final AtomicLong wrapArounds = new AtomicLong();
+    private final AtomicLong collisions = new AtomicLong();
+
+    public CorrelationIdGenerator(IntPredicate isPending) {
+        this(0, isPending);
+    }
+
+    public CorrelationIdGenerator(int firstId, IntPredicate isPending) {
+        if (firstId < 0) {
+            throw new IllegalArgumentException("firstId should not be negative. Was " + firstId);
+        }
+        this.nextId = new AtomicLong(firstId);
+        this.isPending = isPending;
+    }
+
+    public int next() {
+        while (true) {
+            long count = nextId.getAndIncrement();
+            int id = (int) (count & Integer.MAX_VALUE);
+            //ids can be in use only after the first wrap around.
+            if (count <= Integer.MAX_VALUE) {
+                return id;
+            }
+            if (id == 0) {
+                wrapArounds.incrementAndGet();
+                logger.info("Correlation ids wrapped around");
+            }
+            if (!isPending.test(id)) {
+                return id;
+            }
+            collisions.incrementAndGet();
+        }
+    }
+
+    public long getWrapArounds() {
+        return wrapArounds.get();
+    }
+
+    //ids skipped because a pending request still had them.
+    public long getCollisions() {
+        return collisions.get();
+    }
+}
@@ -8,24 +8,34 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.cfg.ConstructorDetector;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import replicate.net.InetAddressAndPort;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class JsonSerDes {
-
-
+    //Mappers are expensive to configure and hold the serializer caches,
+    //so they are built once. Readers and writers are immutable and safe to share between threads.
+    private static final ObjectMapper jsonWriterMapper = jsonWriterMapper();
+    private static final ObjectMapper jsonReaderMapper = jsonReaderMapper();
+    private static final ObjectMapper cborWriterMapper = cborWriterMapper();
+    private static final ObjectMapper cborReaderMapper = cborReaderMapper();
+
+    private static final Map<Class<?>, ObjectWriter> jsonWriters = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> jsonReaders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> cborWriters = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> cborReaders = new ConcurrentHashMap<>();
 
     public static String toJson(Object obj) {
-        var objectMapper = new ObjectMapper(new JsonFactory());
         try {
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-            return new String(objectMapper.writeValueAsBytes(obj));
+            return new String(writerFor(jsonWriters, jsonWriterMapper, obj).writeValueAsBytes(obj));
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
@@ -34,15 +44,7 @@ public class JsonSerDes {
 
     public static <T> T fromJson(byte[] json, Class<T> clazz) {
         try {
-            var objectMapper = new ObjectMapper(new JsonFactory());
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            objectMapper
-                    .registerModule(new ParameterNamesModule(JsonCreator.Mode.DEFAULT));
-            var module = new SimpleModule();
-            module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
-            objectMapper.registerModule(module);
-            return objectMapper.readValue(json, clazz);
+            return readerFor(jsonReaders, jsonReaderMapper, clazz).readValue(json);
 
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -50,12 +52,8 @@ public class JsonSerDes {
     }
 
     public static byte[] serialize(Object obj) {
-        var objectMapper = new ObjectMapper(new CBORFactory());
         try {
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-            objectMapper.registerModule(new Jdk8Module());
-            return objectMapper.writeValueAsBytes(obj);
+            return writerFor(cborWriters, cborWriterMapper, obj).writeValueAsBytes(obj);
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
@@ -64,23 +62,75 @@ public class JsonSerDes {
 
     public static <T> T deserialize(byte[] json, Class<T> clazz) {
         try {
-            var objectMapper = new ObjectMapper(new CBORFactory());
-            objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            objectMapper
-                    .registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
-            var module = new SimpleModule();
-            module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
-            objectMapper.registerModule(module);
-            objectMapper.registerModule(new Jdk8Module());
-            objectMapper.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
-            return objectMapper.readValue(json, clazz);
+            return readerFor(cborReaders, cborReaderMapper, clazz).readValue(json);
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //reads directly from the (possibly direct) buffer, without copying it to an array first.
+    public static <T> T deserialize(ByteBuffer buffer, Class<T> clazz) {
+        try {
+            return readerFor(cborReaders, cborReaderMapper, clazz).readValue(new ByteBufferBackedInputStream(buffer));
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static ObjectWriter writerFor(Map<Class<?>, ObjectWriter> writers, ObjectMapper mapper, Object obj) {
+        if (obj == null) {
+            return mapper.writer();
+        }
+        return writers.computeIfAbsent(obj.getClass(), mapper::writerFor);
+    }
+
+    private static ObjectReader readerFor(Map<Class<?>, ObjectReader> readers, ObjectMapper mapper, Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, mapper::readerFor);
+    }
+
+    private static ObjectMapper jsonWriterMapper() {
+        var objectMapper = new ObjectMapper(new JsonFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        return objectMapper;
+    }
+
+    private static ObjectMapper jsonReaderMapper() {
+        var objectMapper = new ObjectMapper(new JsonFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper
+                .registerModule(new ParameterNamesModule(JsonCreator.Mode.DEFAULT));
+        var module = new SimpleModule();
+        module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
+        objectMapper.registerModule(module);
+        return objectMapper;
+    }
+
+    private static ObjectMapper cborWriterMapper() {
+        var objectMapper = new ObjectMapper(new CBORFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        objectMapper.registerModule(new Jdk8Module());
+        return objectMapper;
+    }
+
+    private static ObjectMapper cborReaderMapper() {
+        var objectMapper = new ObjectMapper(new CBORFactory());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper
+                .registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+        var module = new SimpleModule();
+        module.addKeyDeserializer(InetAddressAndPort.class, new InetAddressAndPortKeyDeserializer());
+        objectMapper.registerModule(module);
+        objectMapper.registerModule(new Jdk8Module());
+        objectMapper.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
+        return objectMapper;
+    }
+
     static class InetAddressAndPortKeyDeserializer extends KeyDeserializer {
         @Override
         public Object deserializeKey(String key, DeserializationContext deserializationContext) throws IOException {
@@ -0,0 +1,97 @@
+package replicate.common;
+
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Hand written binary encoding of a message body.
+ * Used for the messages sent most often, so they skip Jackson's reflection based serialization.
+ * @see MessageCodecs
+ */
+public interface MessageCodec<T> {
+    Class<T> getMessageClass();
+
+    void encode(T message, DataOutputStream os) throws IOException;
+
+    T decode(DataInputStream is) throws IOException;
+
+    static <T> MessageCodec<T> of(Class<T> messageClass, Encoder<T> encoder, Decoder<T> decoder) {
+        return new MessageCodec<>() {
+            @Override
+            public Class<T> getMessageClass() {
+                return messageClass;
+            }
+
+            @Override
+            public void encode(T message, DataOutputStream os) throws IOException {
+                encoder.encode(message, os);
+            }
+
+            @Override
+            public T decode(DataInputStream is) throws IOException {
+                return decoder.decode(is);
+            }
+        };
+    }
+
+    //codec which maps the message to and from its protobuf generated type.
+    static <T, P extends MessageLite> MessageCodec<T> protobuf(Class<T> messageClass, Function<T, P> toProto, Parser<P> parser, Function<P, T> fromProto) {
+        return of(messageClass,
+                (message, os) -> toProto.apply(message).writeTo(os),
+                is -> fromProto.apply(parser.parseFrom(is)));
+    }
+
+    interface Encoder<T> {
+        void encode(T message, DataOutputStream os) throws IOException;
+    }
+
+    interface Decoder<T> {
+        T decode(DataInputStream is) throws IOException;
+    }
+
+    //null is written as length -1.
+    static void writeBytes(DataOutputStream os, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            os.writeInt(-1);
+            return;
+        }
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream is) throws IOException {
+        int length = is.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeString(DataOutputStream os, String value) throws IOException {
+        writeBytes(os, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(DataInputStream is) throws IOException {
+        byte[] bytes = readBytes(is);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeMonotonicId(DataOutputStream os, MonotonicId id) throws IOException {
+        os.writeBoolean(id != null);
+        if (id != null) {
+            id.serialize(os);
+        }
+    }
+
+    static MonotonicId readMonotonicId(DataInputStream is) throws IOException {
+        return is.readBoolean() ? MonotonicId.deserialize(is) : null;
+    }
+}
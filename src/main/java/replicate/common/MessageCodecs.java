@@ -0,0 +1,64 @@
+package replicate.common;
+
+import java.io.*;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Codecs for message bodies, keyed by RequestId.
+ * The same RequestId is used by different message classes in different packages
+ * (e.g. ProposeRequest in paxos, paxoslog and paxoskv), so each Replica has its own registry,
+ * and a codec is used only if its class matches the message being encoded or decoded.
+ * Everything else falls back to JsonSerDes.
+ */
+public class MessageCodecs {
+    private final Map<RequestId, MessageCodec<?>> codecs = new EnumMap<>(RequestId.class);
+
+    public <T> MessageCodecs register(RequestId requestId, MessageCodec<T> codec) {
+        codecs.put(requestId, codec);
+        return this;
+    }
+
+    public byte[] serialize(RequestId requestId, Object message) {
+        MessageCodec<Object> codec = codecFor(requestId, message == null ? null : message.getClass());
+        if (codec == null) {
+            return JsonSerDes.serialize(message);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream os = new DataOutputStream(bytes);
+            codec.encode(message, os);
+            os.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public <T> T deserialize(RequestId requestId, byte[] bytes, Class<T> clazz) {
+        MessageCodec<Object> codec = codecFor(requestId, clazz);
+        if (codec == null) {
+            return JsonSerDes.deserialize(bytes, clazz);
+        }
+        try {
+            return clazz.cast(codec.decode(new DataInputStream(new ByteArrayInputStream(bytes))));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean hasCodec(RequestId requestId, Class<?> clazz) {
+        return codecFor(requestId, clazz) != null;
+    }
+
+    private MessageCodec<Object> codecFor(RequestId requestId, Class<?> clazz) {
+        if (requestId == null || clazz == null) {
+            return null;
+        }
+        MessageCodec<?> codec = codecs.get(requestId);
+        if (codec == null || codec.getMessageClass() != clazz) {
+            return null;
+        }
+        return (MessageCodec<Object>) codec;
+    }
+}
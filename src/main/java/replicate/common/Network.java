@@ -1,24 +1,66 @@
 package replicate.common;
 
-import replicate.net.InetAddressAndPort;
-import replicate.net.SocketClient;
+import replicate.net.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 class Network {
     public static final int MESSAGE_DELAY = 1000;
 
-    List<InetAddressAndPort> dropRequestsTo = new ArrayList<>();
-    Map<InetAddressAndPort, Integer> noOfMessages = new HashMap<>();
-    Map<InetAddressAndPort, Integer> dropAfter = new HashMap<>();
-    Map<InetAddressAndPort, Integer> delayMessagesAfter = new HashMap<>();
+    //Messages can be sent concurrently by per peer senders.
+    List<InetAddressAndPort> dropRequestsTo = new CopyOnWriteArrayList<>();
+    Map<InetAddressAndPort, Integer> noOfMessages = new ConcurrentHashMap<>();
+    Map<InetAddressAndPort, Integer> dropAfter = new ConcurrentHashMap<>();
+    Map<InetAddressAndPort, Integer> delayMessagesAfter = new ConcurrentHashMap<>();
 
     ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+
+    ConnectionPool connectionPool = new ConnectionPool();
+    //one way messages go through the transport.
+    //request-response always uses the pooled blocking connections.
+    private final PeerTransport transport;
+
+    public Network() {
+        this.transport = new SocketClientTransport(connectionPool);
+    }
+
+    public Network(TransportType transportType) throws IOException {
+        this(new Config(null).withTransport(transportType));
+    }
+
+    public Network(Config config) throws IOException {
+        this.transport = createTransport(config);
+    }
+
+    private PeerTransport createTransport(Config config) throws IOException {
+        switch (config.getTransportType()) {
+            case NIO:
+                NIOClientTransport nioClientTransport = new NIOClientTransport();
+                nioClientTransport.start();
+                return nioClientTransport;
+            case NETTY:
+                return new NettyClientTransport();
+            case IN_PROCESS:
+                return new InProcessTransport(config.encodeInProcessFrames());
+            case BLOCKING:
+            default:
+                return new SocketClientTransport(connectionPool);
+        }
+    }
+
     public void sendOneWay(InetAddressAndPort address, RequestOrResponse message) throws IOException {
+        sendOneWay(address, message, e -> {});
+    }
+
+    //onFailure is called if the transport drops the message after it was queued.
+    public void sendOneWay(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
         if (dropRequestsTo.contains(address) || noOfMessagesReachedLimit(address)) {
             removeExistingConnections(address);
             throw new IOException("Unable to connect to " + address);
@@ -29,14 +71,12 @@ class Network {
             return;
         }
 
-        sendMessage(address, message);
+        sendMessage(address, message, onFailure);
     }
 
     private void removeExistingConnections(InetAddressAndPort address) {
-        SocketClient socketClient = connectionPool.remove(address);
-        if (socketClient != null) {
-            socketClient.close();
-        }
+        transport.close(address);
+        connectionPool.evict(address);
     }
 
     public RequestOrResponse sendRequestResponse(InetAddressAndPort address, RequestOrResponse message) throws IOException {
@@ -56,7 +96,7 @@ class Network {
         executor.schedule(()->{
             try {
                 System.out.println("Sending delayed message to address = " + address);
-                sendMessage(address, message);
+                sendMessage(address, message, e -> {});
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -72,44 +112,37 @@ class Network {
         return noOfRequestsSent >= delayAfterNRequests;
     }
 
-    Map<InetAddressAndPort, SocketClient> connectionPool = new HashMap<>();
-
-    private void sendMessage(InetAddressAndPort address, RequestOrResponse message) throws IOException {
-        SocketClient socketClient = getOrCreateConnection(address);
-        socketClient.sendOneway(message);
-        Integer integer = noOfMessages.get(address);
-        if (integer == null) {
-            integer = 0;
-        }
-        noOfMessages.put(address, integer + 1);
+    private void sendMessage(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        transport.sendOneway(address, message, onFailure);
+        noOfMessages.merge(address, 1, Integer::sum);
     }
 
     private RequestOrResponse sendAndReceive(InetAddressAndPort address, RequestOrResponse message) throws IOException {
-        SocketClient socketClient = getOrCreateConnection(address);
-        RequestOrResponse response = socketClient.blockingSend(message);
-        Integer integer = noOfMessages.get(address);
-        if (integer == null) {
-            integer = 0;
+        SocketClient socketClient = connectionPool.getOrCreate(address);
+        RequestOrResponse response;
+        try {
+            response = socketClient.blockingSend(message);
+        } catch (RuntimeException e) {
+            //A timed out response might still arrive later on this connection,
+            //so it can not be reused for other requests.
+            connectionPool.evict(address);
+            throw new IOException("Request to " + address + " failed", e);
         }
-        noOfMessages.put(address, integer + 1);
+        noOfMessages.merge(address, 1, Integer::sum);
         return response;
     }
 
-    private synchronized SocketClient getOrCreateConnection(InetAddressAndPort address) throws IOException {
-        SocketClient socketClient = connectionPool.get(address);
-        if (socketClient == null || !socketClient.isClosed()) {
-            socketClient = new SocketClient(address);
-            connectionPool.put(address, socketClient);
-        }
-        return socketClient;
-    }
-
     private boolean noOfMessagesReachedLimit(InetAddressAndPort address) {
         Integer dropAfterMessages = dropAfter.get(address);
         Integer noOfMessages = this.noOfMessages.get(address);
         return dropAfterMessages == null?false:(noOfMessages != null && noOfMessages >= dropAfterMessages);
     }
 
+    //messages to an address with faults injected must go through sendOneWay.
+    public boolean hasFaultsFor(InetAddressAndPort address) {
+        return dropRequestsTo.contains(address) || dropAfter.containsKey(address) || delayMessagesAfter.containsKey(address);
+    }
+
     public void dropMessagesTo(InetAddressAndPort address) {
         dropRequestsTo.add(address);
     }
@@ -119,6 +152,7 @@ class Network {
         dropAfter.remove(address);
         delayMessagesAfter.remove(address);
         noOfMessages.remove(address); //also reset message counter to specific address.
+        connectionPool.resetBackoff(address);
     }
 
     public void dropMessagesAfter(InetAddressAndPort address, int dropAfterNoOfMessages) {
@@ -131,10 +165,23 @@ class Network {
     }
 
     public void closeAllConnections() {
-        Set<InetAddressAndPort> inetAddressAndPorts = connectionPool.keySet();
-        for (InetAddressAndPort inetAddressAndPort : inetAddressAndPorts) {
-            connectionPool.get(inetAddressAndPort).close();
-        }
-        connectionPool.clear();
+        transport.closeAll();
+        connectionPool.closeAll();
+    }
+
+    public PeerTransport getTransport() {
+        return transport;
+    }
+
+    public long getConnectionsCreated() {
+        return connectionPool.getConnectionsCreated();
+    }
+
+    public long getConnectionsReused() {
+        return connectionPool.getConnectionsReused();
+    }
+
+    public long getConnectFailures() {
+        return connectionPool.getConnectFailures();
     }
 }
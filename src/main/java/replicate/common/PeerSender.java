@@ -0,0 +1,151 @@
+package replicate.common;
+
+import replicate.net.FrameCodec;
+import replicate.net.InetAddressAndPort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sends messages to a single peer from a dedicated thread.
+ * Replica fans out messages by queuing them on each peer's sender,
+ * so an unreachable or slow peer delays only the messages sent to it.
+ * The queue is bounded. If it is full, the message is dropped and the failure
+ * is reported immediately, so that quorum callbacks are not kept waiting.
+ *
+ * With a max batch size above 1, the messages queued for the peer, and those arriving
+ * within the batch wait time, are sent together in a single BatchRequest.
+ * While faults are injected for the peer, they are sent one at a time.
+ */
+class PeerSender extends Thread implements Logging {
+    private final InetAddressAndPort address;
+    private final Network network;
+    private final ArrayBlockingQueue<OutboundMessage> queue;
+    private final int maxBatchSize;
+    private final long maxBatchWaitNanos;
+    private final AtomicLong messagesDropped = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong messagesBatched = new AtomicLong();
+    private volatile boolean isRunning = true;
+
+    PeerSender(InetAddressAndPort address, Network network, int capacity) {
+        this(address, network, capacity, 1, 0);
+    }
+
+    PeerSender(InetAddressAndPort address, Network network, int capacity, int maxBatchSize, long maxBatchWaitNanos) {
+        super("PeerSender-" + address);
+        setDaemon(true);
+        this.address = address;
+        this.network = network;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchWaitNanos = maxBatchWaitNanos;
+    }
+
+    public void send(RequestOrResponse message, Consumer<IOException> onFailure) {
+        if (!queue.offer(new OutboundMessage(message, onFailure))) {
+            messagesDropped.incrementAndGet();
+            onFailure.accept(new IOException("Outbound queue to " + address + " is full"));
+        }
+    }
+
+    @Override
+    public void run() {
+        while (isRunning) {
+            try {
+                OutboundMessage outboundMessage = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (outboundMessage == null) {
+                    continue;
+                }
+                if (maxBatchSize <= 1) {
+                    send(outboundMessage);
+                    continue;
+                }
+                List<OutboundMessage> batch = collectBatch(outboundMessage);
+                if (batch.size() == 1) {
+                    send(outboundMessage);
+                } else if (network.hasFaultsFor(address)) {
+                    //faults are injected after a number of messages, which a batch would count as one.
+                    batch.forEach(this::send);
+                } else {
+                    send(batch);
+                }
+            } catch (InterruptedException e) {
+                //shutdown
+            }
+        }
+    }
+
+    private List<OutboundMessage> collectBatch(OutboundMessage first) throws InterruptedException {
+        List<OutboundMessage> batch = new ArrayList<>(maxBatchSize);
+        batch.add(first);
+        queue.drainTo(batch, maxBatchSize - 1);
+        long deadline = System.nanoTime() + maxBatchWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                break;
+            }
+            OutboundMessage next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void send(OutboundMessage outboundMessage) {
+        try {
+            network.sendOneWay(address, outboundMessage.message(), outboundMessage.onFailure());
+        } catch (IOException e) {
+            outboundMessage.onFailure().accept(e);
+        } catch (Exception e) {
+            getLogger().error("Unexpected failure sending message to " + address, e);
+        }
+    }
+
+    //The receiving Replica unpacks the batch and handles the messages in the order they were queued.
+    private void send(List<OutboundMessage> batch) {
+        List<RequestOrResponse> messages = batch.stream().map(OutboundMessage::message).toList();
+        RequestOrResponse batchRequest = new RequestOrResponse(RequestId.BatchRequest.getId(), FrameCodec.encodeBatch(messages), -1);
+        try {
+            network.sendOneWay(address, batchRequest, e -> batch.forEach(outboundMessage -> outboundMessage.onFailure().accept(e)));
+            batchesSent.incrementAndGet();
+            messagesBatched.addAndGet(batch.size());
+        } catch (IOException e) {
+            batch.forEach(outboundMessage -> outboundMessage.onFailure().accept(e));
+        } catch (Exception e) {
+            getLogger().error("Unexpected failure sending batch to " + address, e);
+        }
+    }
+
+    public void shutdown() {
+        isRunning = false;
+        interrupt();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getMessagesDropped() {
+        return messagesDropped.get();
+    }
+
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    public long getMessagesBatched() {
+        return messagesBatched.get();
+    }
+
+    private record OutboundMessage(RequestOrResponse message, Consumer<IOException> onFailure) {}
+}
@@ -0,0 +1,137 @@
+package replicate.common;
+
+import replicate.singularupdatequeue.BatchingSingularUpdateQueue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A stage of Replica's message handling which runs next to the update thread, on threads of its own.
+ * Each thread has its own bounded queue. Tasks submitted with the same key run on the same thread,
+ * in the order they were submitted, so messages from one sender, or to one destination, keep their order
+ * while messages for other keys are handled in parallel.
+ *
+ *   dispatch threads      decode stage          update thread        encode stage
+ *   ----------------> [ decode by sender ] --> [ handle message ] --> [ encode and send by destination ]
+ *
+ * Submitting waits while the thread's queue is full, so a slow stage slows down the stage feeding it.
+ * A task submitted from one of the stage's own threads never waits, as two stage threads waiting for
+ * space in each other's queue would wait forever. If the queue is full, the task goes on the thread's
+ * overflow list instead, which the thread runs once its queue is empty. Tasks submitted while
+ * the overflow list is not empty wait for it to be run, so they are not run before the tasks on it.
+ */
+class PipelineStage implements Logging {
+    private static final long OVERFLOW_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    //offered to a worker after adding to its overflow list, in case it is waiting on an empty queue.
+    private static final Runnable WAKE_UP = () -> {};
+
+    private final Worker[] workers;
+    private final LongAdder tasksHandled = new LongAdder();
+    private final LongAdder tasksOverflowed = new LongAdder();
+
+    PipelineStage(String name, int threads, int capacity, int maxDrainSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A stage needs at least one thread. Was " + threads);
+        }
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(name + "-" + i, capacity, maxDrainSize);
+        }
+    }
+
+    public void submit(Object key, Runnable task) {
+        workers[Math.floorMod(Objects.hashCode(key), workers.length)].submit(task);
+    }
+
+    private boolean isStageThread() {
+        Thread current = Thread.currentThread();
+        for (Worker worker : workers) {
+            if (worker.queue == current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void run(Runnable task) {
+        if (task == WAKE_UP) {
+            return;
+        }
+        tasksHandled.increment();
+        try {
+            task.run();
+        } catch (Exception e) {
+            getLogger().error(Thread.currentThread().getName() + " failed running task", e);
+        }
+    }
+
+    class Worker {
+        private final BatchingSingularUpdateQueue<Runnable, Void> queue;
+        private final Queue<Runnable> overflow = new ConcurrentLinkedQueue<>();
+
+        Worker(String name, int capacity, int maxDrainSize) {
+            queue = BatchingSingularUpdateQueue.batching(this::runBatch, capacity, maxDrainSize);
+            queue.setName(name);
+            queue.setDaemon(true);
+        }
+
+        void submit(Runnable task) {
+            if (isStageThread()) {
+                if (!overflow.isEmpty() || !queue.offer(task)) {
+                    overflow.add(task);
+                    tasksOverflowed.increment();
+                    queue.offer(WAKE_UP); //if the queue is full, the thread is running and gets to the overflow list.
+                }
+                return;
+            }
+            while (!overflow.isEmpty()) {
+                LockSupport.parkNanos(OVERFLOW_WAIT_NANOS);
+            }
+            queue.submit(task);
+        }
+
+        private List<Void> runBatch(List<Runnable> tasks) {
+            tasks.forEach(PipelineStage.this::run);
+            //tasks in the queue were submitted before those on the overflow list.
+            if (queue.taskCount() == 0) {
+                Runnable task;
+                while ((task = overflow.poll()) != null) {
+                    run(task);
+                }
+            }
+            return null;
+        }
+    }
+
+    public void start() {
+        Arrays.stream(workers).forEach(worker -> worker.queue.start());
+    }
+
+    public void shutdown() {
+        Arrays.stream(workers).forEach(worker -> worker.queue.shutdown());
+    }
+
+    public int getThreads() {
+        return workers.length;
+    }
+
+    public long getTasksHandled() {
+        return tasksHandled.sum();
+    }
+
+    //tasks submitted from a stage thread which found the queue full.
+    public long getTasksOverflowed() {
+        return tasksOverflowed.sum();
+    }
+
+    //largest number of tasks found waiting on any of the stage's threads.
+    public long getMaxQueueDepth() {
+        return Arrays.stream(workers).mapToLong(worker -> worker.queue.getMaxQueueDepth()).max().orElse(0);
+    }
+}
@@ -0,0 +1,29 @@
+package replicate.common;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import replicate.pb.MonotonicIdProto;
+
+/**
+ * Conversions shared by the protobuf codecs of the message classes.
+ * Protobuf has no nulls, so nullable fields are declared optional in the .proto files
+ * and are set only when present.
+ */
+public class Protobufs {
+
+    public static MonotonicIdProto toProto(MonotonicId id) {
+        return MonotonicIdProto.newBuilder()
+                .setRequestId(id.requestId)
+                .setServerId(id.serverId)
+                .build();
+    }
+
+    public static MonotonicId fromProto(MonotonicIdProto proto) {
+        return new MonotonicId(proto.getRequestId(), proto.getServerId());
+    }
+
+    //bodies are not modified after they are sent, so they are wrapped without a copy.
+    public static ByteString toProto(byte[] bytes) {
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+}
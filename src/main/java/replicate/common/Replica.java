@@ -4,19 +4,29 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import replicate.heartbeat.HeartBeatScheduler;
 import replicate.net.ClientConnection;
+import replicate.net.FrameCodec;
+import replicate.net.FrameCompressor;
+import replicate.net.InProcessTransport;
 import replicate.net.InetAddressAndPort;
 import replicate.net.NIOSocketListener;
+import replicate.net.NettySocketListener;
+import replicate.net.PeerTransport;
+import replicate.net.RequestConsumer;
+import replicate.net.RequestListener;
+import replicate.net.TransportType;
 import replicate.net.requestwaitinglist.RequestCallback;
-import replicate.net.requestwaitinglist.RequestWaitingList;
-import replicate.singularupdatequeue.SingularUpdateQueue;
+import replicate.net.requestwaitinglist.IntRequestWaitingList;
+import replicate.singularupdatequeue.BatchingSingularUpdateQueue;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -34,17 +44,23 @@ public abstract class Replica {
     private static Logger logger = LogManager.getLogger(Replica.class);
     private final Config config;
     private final String name;
-    private final NIOSocketListener peerListener;
-    private final NIOSocketListener clientListener;
+    private final RequestListener peerListener;
+    private final RequestListener clientListener;
+    private final AtomicLong clientRequestsShed = new AtomicLong();
+    private final AtomicLong localDeliveries = new AtomicLong();
+    private final MessageCodecs messageCodecs = new MessageCodecs();
+    private final FrameCompressor frameCompressor;
     private InetAddressAndPort clientConnectionAddress;
     private InetAddressAndPort peerConnectionAddress;
-    private final Network network = new Network();
-    protected final RequestWaitingList requestWaitingList;
+    private final Network network;
+    protected final IntRequestWaitingList requestWaitingList;
+    private final CorrelationIdGenerator correlationIds;
     protected SystemClock clock;
     private List<InetAddressAndPort> peerAddresses;
     private volatile long heartbeatReceivedNs = 0;
 
-    Map<RequestId, Consumer<Message<RequestOrResponse>>> requestMap = new HashMap<>();
+    //indexed by the numeric RequestId, so dispatching a message is an array lookup.
+    private final MessageHandler[] handlers = new MessageHandler[RequestId.maxId() + 1];
 
     public Replica(String name, Config config,
                    SystemClock clock,
@@ -54,16 +70,30 @@ public abstract class Replica {
         this.name = name;
 
         this.config = config;
-        this.requestWaitingList = new RequestWaitingList(clock);
+        this.requestWaitingList = new IntRequestWaitingList(clock, config.getRequestTimeout());
+        this.correlationIds = new CorrelationIdGenerator(requestWaitingList::isPending);
         this.clock = clock;
         this.peerAddresses = peerAddresses;
         this.clientConnectionAddress = clientConnectionAddress;
         this.peerConnectionAddress = peerConnectionAddress;
-        this.peerListener = new NIOSocketListener(this::handlePeerMessage, peerConnectionAddress);
-        this.clientListener = new NIOSocketListener(this::handleClientRequest, clientConnectionAddress);
+        this.network = new Network(config);
+        this.frameCompressor = new FrameCompressor(config.getCompressionThresholdBytes(), config.getMaxFrameSize());
+        this.peerListener = createListener(this::handlePeerMessage, peerConnectionAddress, config);
+        this.clientListener = createListener(this::handleClientRequest, clientConnectionAddress, config);
+        this.singularUpdateQueue = createUpdateQueue(config);
+        this.lanes = createLanes(config);
+        this.decodeStage = createStage("Decode", config.getDecodeThreads(), config);
+        this.encodeStage = createStage("Encode", config.getEncodeThreads(), config);
         this.registerHandlers();
     }
 
+    private static RequestListener createListener(RequestConsumer consumer, InetAddressAndPort listenAddress, Config config) throws IOException {
+        if (config.getTransportType() == TransportType.NETTY) {
+            return new NettySocketListener(consumer, listenAddress, config);
+        }
+        return new NIOSocketListener(consumer, listenAddress, config);
+    }
+
 
     /**
      * Following schedulers support implementing basic heartbeat mechanism.
@@ -91,7 +121,13 @@ public abstract class Replica {
     public final void start() {
         peerListener.start();
         clientListener.start();
+        if (config.getTransportType() == TransportType.IN_PROCESS) {
+            InProcessTransport.register(peerConnectionAddress, this::handlePeerMessage);
+        }
         singularUpdateQueue.start();
+        Arrays.stream(lanes).forEach(Thread::start);
+        startStage(decodeStage);
+        startStage(encodeStage);
         onStart();
     }
 
@@ -105,11 +141,11 @@ public abstract class Replica {
     //Send message without expecting any messages as a response from the peer
     //@see sendRequestToReplicas which expects a message from the peer.
     protected <T extends Request> void sendOneway(InetAddressAndPort address, T request, int correlationId) {
-        try {
-            network.sendOneWay(address, new RequestOrResponse(request.getRequestId().getId(), serialize(request), correlationId, getPeerConnectionAddress()));
-        } catch (IOException e) {
-            logger.error("Communication failure sending request to " + address + " from " + getName());
+        if (deliverToSelf(address, request.getRequestId(), request, correlationId)) {
+            return;
         }
+        RequestOrResponse message = newPeerMessage(request.getRequestId(), request, correlationId);
+        send(address, message, e -> logger.error("Communication failure sending request to " + address + " from " + getName()));
     }
 
     private <T extends Request> void sendOneway(InetAddressAndPort address, T request) {
@@ -121,26 +157,130 @@ public abstract class Replica {
     //The response message types are configured to invoke responseMessageHandler which invokes the callback
     //@see responseMessageHandler
     public <T> void sendMessageToReplicas(RequestCallback callback, RequestId requestId, T requestToReplicas) {
+        sendMessageToReplicas(callback, requestId, requestToReplicas, config.getRequestTimeout());
+    }
+
+    //Callbacks not getting a response within the timeout are failed with a TimeoutException.
+    public <T> void sendMessageToReplicas(RequestCallback callback, RequestId requestId, T requestToReplicas, Duration timeout) {
         for (InetAddressAndPort replica : peerAddresses) {
             int correlationId = newCorrelationId();
-            RequestOrResponse request = new RequestOrResponse(requestId.getId(), serialize(requestToReplicas), correlationId, getPeerConnectionAddress());
-            sendMessageToReplica(callback, replica, request);
+            if (replica.equals(peerConnectionAddress)) {
+                //added before delivery, as the response can be handled before deliverToSelf returns.
+                requestWaitingList.add(correlationId, callback, timeout);
+                if (!deliverToSelf(replica, requestId, requestToReplicas, correlationId)) {
+                    sendAwaitingResponse(replica, newPeerMessage(requestId, requestToReplicas, correlationId));
+                }
+                continue;
+            }
+            RequestOrResponse request = newPeerMessage(requestId, requestToReplicas, correlationId);
+            sendMessageToReplica(callback, replica, request, timeout);
+        }
+    }
+
+    //Messages a replica sends to itself are put straight on its own update queue, without being encoded.
+    //Handlers get the sent object itself, so messages must not be modified once sent.
+    //If the queue is full, the message goes through the network like the others,
+    //so the update thread sending it never blocks on its own queue.
+    private boolean deliverToSelf(InetAddressAndPort address, RequestId requestId, Object body, int correlationId) {
+        if (!address.equals(peerConnectionAddress) || network.hasFaultsFor(address)) {
+            return false;
+        }
+        RequestOrResponse message = new RequestOrResponse(requestId.getId(), null, correlationId, peerConnectionAddress)
+                .withDecodedBody(body, () -> serialize(requestId, body));
+        var header = new Message.Header(peerConnectionAddress, correlationId, requestId);
+        if (!queueFor(requestId, body).offer(new Message<>(message, header))) {
+            return false;
         }
+        localDeliveries.incrementAndGet();
+        return true;
+    }
+
+    public long getLocalDeliveries() {
+        return localDeliveries.get();
     }
 
     //Sends message to replica and expects that the replica will send back a message with the same correlationId.
     //The message is kept waiting in the RequestWaitingList and expired if the replica fails to send message back.
     public void sendMessageToReplica(RequestCallback callback, InetAddressAndPort replicaAddress, RequestOrResponse request) {
-        try {
-            logger.debug(getName() + " Sending " + RequestId.valueOf(request.getRequestId()) + " to " + replicaAddress + " with CorrelationId:" + request.getCorrelationId());
-            requestWaitingList.add(request.getCorrelationId(), callback);
-            network.sendOneWay(replicaAddress, request);
-         } catch (IOException e) {
+        sendMessageToReplica(callback, replicaAddress, request, config.getRequestTimeout());
+    }
+
+    public void sendMessageToReplica(RequestCallback callback, InetAddressAndPort replicaAddress, RequestOrResponse request, Duration timeout) {
+        logger.debug(getName() + " Sending " + RequestId.valueOf(request.getRequestId()) + " to " + replicaAddress + " with CorrelationId:" + request.getCorrelationId());
+        requestWaitingList.add(request.getCorrelationId(), callback, timeout);
+        sendAwaitingResponse(replicaAddress, request);
+    }
+
+    //the callback for the response is already in the RequestWaitingList.
+    private void sendAwaitingResponse(InetAddressAndPort replicaAddress, RequestOrResponse request) {
+        send(replicaAddress, request, e -> {
             logger.error("Communication failure sending request to " + replicaAddress + " from " + getName());
             //If communication fails, it should immidiately report it to the callback.
             //Otherwise if a quorum of replica could not be reached, the callback will never complete.
             requestWaitingList.handleError(request.getCorrelationId(), e);
-         }
+        });
+    }
+
+    //With an encode stage, the body is encoded by the stage thread sending the message,
+    //so the body must not be modified once sent.
+    private RequestOrResponse newPeerMessage(RequestId requestId, Object body, int correlationId) {
+        if (encodeStage == null) {
+            return new RequestOrResponse(requestId.getId(), serialize(requestId, body), correlationId, getPeerConnectionAddress());
+        }
+        return new RequestOrResponse(requestId.getId(), null, correlationId, getPeerConnectionAddress())
+                .withBodyEncoder(() -> serialize(requestId, body));
+    }
+
+    //When outbound queues are configured, the message is queued on the peer's sender
+    //and this returns immediately. onFailure is then invoked on the sender thread.
+    //With an encode stage, the message is encoded and sent from the stage thread for the peer.
+    private void send(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) {
+        if (encodeStage != null) {
+            encodeStage.submit(address, () -> sendNow(address, message, onFailure));
+            return;
+        }
+        sendNow(address, message, onFailure);
+    }
+
+    private void sendNow(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) {
+        message = frameCompressor.compress(message);
+        if (config.getPeerOutboundQueueSize() > 0) {
+            peerSenders.computeIfAbsent(address, this::startPeerSender).send(message, onFailure);
+            return;
+        }
+        try {
+            network.sendOneWay(address, message, onFailure);
+        } catch (IOException e) {
+            onFailure.accept(e);
+        }
+    }
+
+    private final Map<InetAddressAndPort, PeerSender> peerSenders = new ConcurrentHashMap<>();
+
+    private PeerSender startPeerSender(InetAddressAndPort address) {
+        PeerSender peerSender = new PeerSender(address, network, config.getPeerOutboundQueueSize(), config.getMaxBatchSize(), config.getMaxBatchWaitTime());
+        peerSender.start();
+        return peerSender;
+    }
+
+    public int getOutboundQueueDepth(InetAddressAndPort address) {
+        PeerSender peerSender = peerSenders.get(address);
+        return peerSender == null ? 0 : peerSender.getQueueDepth();
+    }
+
+    public long getOutboundMessagesDropped(InetAddressAndPort address) {
+        PeerSender peerSender = peerSenders.get(address);
+        return peerSender == null ? 0 : peerSender.getMessagesDropped();
+    }
+
+    public long getOutboundBatchesSent(InetAddressAndPort address) {
+        PeerSender peerSender = peerSenders.get(address);
+        return peerSender == null ? 0 : peerSender.getBatchesSent();
+    }
+
+    //the transport one way peer messages are sent on.
+    public PeerTransport getPeerTransport() {
+        return network.getTransport();
     }
 
     public <T extends Request> void sendOnewayMessageToReplicas(T requestToReplicas) {
@@ -165,7 +305,7 @@ public abstract class Replica {
         List<Res> responses = new ArrayList<>();
         for (InetAddressAndPort replica : peerAddresses) {
             int correlationId = newCorrelationId();
-            RequestOrResponse request = new RequestOrResponse(requestId.getId(), serialize(requestToReplicas), correlationId, getPeerConnectionAddress());
+            RequestOrResponse request = new RequestOrResponse(requestId.getId(), serialize(requestId, requestToReplicas), correlationId, getPeerConnectionAddress());
             try {
                 RequestOrResponse response = network.sendRequestResponse(replica, request);
                 Class<Res> responseClass = responseClasses.get(RequestId.valueOf(response.getRequestId()));
@@ -178,19 +318,206 @@ public abstract class Replica {
         return responses;
     }
 
-    SingularUpdateQueue<Message<RequestOrResponse>, Void> singularUpdateQueue = new SingularUpdateQueue<Message<RequestOrResponse>, Void>((message) -> {
-        markHeartbeatReceived(); //TODO: Mark heartbeats in message handlings explcitily. As this can be user request as well.
-        RequestOrResponse request = message.getRequest();
-        Consumer consumer = requestMap.get(RequestId.valueOf(request.getRequestId()));
-        consumer.accept(message);
+    //The update thread blocks while there are no messages, and handles all the messages queued when it wakes up.
+    final BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void> singularUpdateQueue;
+
+    private List<Void> handleMessages(List<Message<RequestOrResponse>> messages) {
+        for (Message<RequestOrResponse> message : messages) {
+            markHeartbeatReceived(); //TODO: Mark heartbeats in message handlings explcitily. As this can be user request as well.
+            MessageHandler handler = handlerFor(message.getRequestId());
+            if (handler == null) {
+                logger.warn(getName() + " has no handler for " + message.getRequestId());
+                continue;
+            }
+            try {
+                handler.handle(message);
+            } catch (Exception e) {
+                logger.error(getName() + " failed handling " + message.getRequestId(), e);
+            }
+        }
+        onBatchHandled();
         return null;
-    });
+    }
+
+    //no-op. Called on the update thread, or a lane, after each batch of messages it handled,
+    //so implementations can flush their log or send queued messages once per batch.
+    protected void onBatchHandled() {
+    }
+
+    private BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void> createUpdateQueue(Config config) {
+        if (config.usesRingBufferUpdateQueue()) {
+            return BatchingSingularUpdateQueue.batchingOnRingBuffer(this::handleMessages, config.getUpdateQueueCapacity(), config.getUpdateQueueMaxDrainSize(), config.getUpdateQueueWaitStrategy());
+        }
+        return BatchingSingularUpdateQueue.batching(this::handleMessages, config.getUpdateQueueCapacity(), config.getUpdateQueueMaxDrainSize());
+    }
+
+    public BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void> getUpdateQueue() {
+        return singularUpdateQueue;
+    }
+
+    //Messages registered with partitionsByKey are handled on one of these lanes instead of the update thread.
+    //All the messages for a key go to the same lane, in the order they arrive,
+    //while messages for other keys are handled in parallel on the other lanes.
+    private final BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void>[] lanes;
+    private final PartitionKey<?>[] partitionKeys = new PartitionKey[RequestId.maxId() + 1];
+
+    @SuppressWarnings("unchecked")
+    private BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void>[] createLanes(Config config) {
+        BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void>[] lanes = new BatchingSingularUpdateQueue[config.getUpdateQueueLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = createUpdateQueue(config);
+            lanes[i].setName(getName() + "-UpdateLane-" + i);
+        }
+        return lanes;
+    }
+
+    public List<BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void>> getUpdateQueueLanes() {
+        return List.of(lanes);
+    }
+
+    //Handlers of partitioned messages run on the lane threads, so they can only share
+    //thread safe state with other handlers, apart from the state of their own key.
+    //Takes effect only when Config.withUpdateQueueLanes is set.
+    protected <T> void partitionsByKey(RequestId requestId, Class<T> messageClass, Function<T, ?> keyOf) {
+        partitionKeys[requestId.getId()] = new PartitionKey<>(messageClass, keyOf);
+    }
+
+    //Partitioned messages are decoded here, on the dispatch thread, to get their key.
+    //The handler gets the decoded message instead of decoding it again.
+    //A body which fails to decode has no key. It goes to the update queue, to fail in the handler.
+    private BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void> queueFor(Message<RequestOrResponse> message) {
+        PartitionKey<?> partitionKey = partitionKeyFor(message.getRequestId());
+        if (partitionKey == null) {
+            return singularUpdateQueue;
+        }
+        RequestOrResponse request = message.getRequest();
+        Object body;
+        try {
+            body = deserialize(request, partitionKey.messageClass());
+        } catch (Exception e) {
+            logger.debug(getName() + " could not decode " + message.getRequestId(), e);
+            return singularUpdateQueue;
+        }
+        request.withDecodedBody(body, null);
+        return laneFor(partitionKey.keyOf(body));
+    }
+
+    private BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void> queueFor(RequestId requestId, Object body) {
+        PartitionKey<?> partitionKey = partitionKeyFor(requestId);
+        return partitionKey == null ? singularUpdateQueue : laneFor(partitionKey.keyOf(body));
+    }
+
+    private PartitionKey<?> partitionKeyFor(RequestId requestId) {
+        return lanes.length == 0 || requestId == null ? null : partitionKeys[requestId.getId()];
+    }
+
+    //messages with ids not known to this version have no RequestId.
+    private MessageHandler handlerFor(RequestId requestId) {
+        return requestId == null ? null : handlers[requestId.getId()];
+    }
+
+    private BatchingSingularUpdateQueue<Message<RequestOrResponse>, Void> laneFor(Object key) {
+        return lanes[Math.floorMod(Objects.hashCode(key), lanes.length)];
+    }
+
+    private record PartitionKey<T>(Class<T> messageClass, Function<T, ?> keyOf) {
+        Object keyOf(Object body) {
+            return keyOf.apply(messageClass.cast(body));
+        }
+    }
+
+    //Configured with Config.withPipelineStages. null when the work of the stage is done on the update thread.
+    private final PipelineStage decodeStage;
+    private final PipelineStage encodeStage;
+
+    private PipelineStage createStage(String stageName, int threads, Config config) {
+        if (threads == 0) {
+            return null;
+        }
+        return new PipelineStage(getName() + "-" + stageName, threads, config.getUpdateQueueCapacity(), config.getUpdateQueueMaxDrainSize());
+    }
+
+    private static void startStage(PipelineStage stage) {
+        if (stage != null) {
+            stage.start();
+        }
+    }
+
+    private static void shutdownStage(PipelineStage stage) {
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    public long getDecodeStageTasksHandled() {
+        return decodeStage == null ? 0 : decodeStage.getTasksHandled();
+    }
+
+    public long getEncodeStageTasksHandled() {
+        return encodeStage == null ? 0 : encodeStage.getTasksHandled();
+    }
+
+    //Decodes the body for the message's handler, so the update thread only runs the handler.
+    //A body which fails to decode is left to fail in the handler.
+    private void decode(Message<RequestOrResponse> message) {
+        RequestOrResponse request = message.getRequest();
+        MessageHandler handler = handlerFor(message.getRequestId());
+        if (handler == null || request.decodedBody() != null) {
+            return;
+        }
+        try {
+            request.withDecodedBody(deserialize(request, handler.messageClass()), null);
+        } catch (Exception e) {
+            logger.debug(getName() + " could not decode " + message.getRequestId(), e);
+        }
+    }
 
     //handles messages sent by peers in the cluster in message passing style.
     //peer to peer communication happens on peerConnectionAddress
+    //With a decode stage, messages from a peer are decoded, in order, on the stage thread for the peer.
     public void handlePeerMessage(Message<RequestOrResponse> message)
     {
-        singularUpdateQueue.submit(message);
+        if (decodeStage != null) {
+            decodeStage.submit(message.getFromAddress(), () -> dispatchPeerMessage(message));
+            return;
+        }
+        dispatchPeerMessage(message);
+    }
+
+    private void dispatchPeerMessage(Message<RequestOrResponse> message) {
+        if (message.getRequestId() == RequestId.BatchRequest) {
+            handleBatch(message);
+            return;
+        }
+        Message<RequestOrResponse> decompressed = decompress(message);
+        if (decodeStage != null) {
+            decode(decompressed);
+        }
+        queueFor(decompressed).submit(decompressed);
+    }
+
+    //peer messages are inflated on the listener's dispatch threads, before they reach the update queue.
+    private Message<RequestOrResponse> decompress(Message<RequestOrResponse> message) {
+        if (!message.getRequest().isCompressed()) {
+            return message;
+        }
+        return new Message<>(frameCompressor.decompress(message.getRequest()), message.header, message.getClientConnection());
+    }
+
+    public FrameCompressor getFrameCompressor() {
+        return frameCompressor;
+    }
+
+    //messages batched by the sender's PeerSender are handled in the order they were queued.
+    private void handleBatch(Message<RequestOrResponse> batch) {
+        for (RequestOrResponse request : FrameCodec.decodeBatch(batch.getRequest().getMessageBodyJson())) {
+            var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), RequestId.valueOf(request.getRequestId()));
+            var message = new Message<>(frameCompressor.decompress(request), header, batch.getClientConnection());
+            if (decodeStage != null) {
+                decode(message);
+            }
+            queueFor(message).submit(message);
+        }
     }
 
     protected void markHeartbeatReceived() {
@@ -199,10 +526,33 @@ public abstract class Replica {
 
     //handles requests sent by clients of the cluster.
     //rpc requests are sent by clients on the clientConnectionAddress
+    //Requests from a client which is not reading its responses are dropped.
+    //Even an error response would grow the responses already queued above the high watermark.
     public void handleClientRequest(Message<RequestOrResponse> message) {
+        ClientConnection clientConnection = message.getClientConnection();
+        if (!clientConnection.isWritable()) {
+            clientRequestsShed.incrementAndGet();
+            return;
+        }
+        if (decodeStage != null) {
+            decodeStage.submit(clientConnection, () -> {
+                decode(message);
+                singularUpdateQueue.submit(message);
+            });
+            return;
+        }
         singularUpdateQueue.submit(message);
     }
 
+    public long getClientRequestsShed() {
+        return clientRequestsShed.get();
+    }
+
+    //bytes of responses waiting to be sent on all the client connections.
+    public long getClientQueuedBytes() {
+        return clientListener.getQueuedBytes();
+    }
+
     //Configures a handler to process a message.
     //Sends the response from the handler
     // as a separate message to the sender.
@@ -238,14 +588,7 @@ public abstract class Replica {
      * */
     @Deprecated
     public <Req extends Request, Res extends Request> ResponseMessageBuilder<Res> handlesMessage(RequestId requestId, Function<Req, Res> handler, Class<Req> requestClass) {
-        var deserialize = createDeserializer(requestClass);
-        var applyHandler = wrapHandler(handler);
-        requestMap.put(requestId, (message)->{
-            deserialize
-                    .andThen(applyHandler)
-                    .andThen(sendMessageToSender)
-                    .apply(message);
-        });
+        handlers[requestId.getId()] = new RespondingMessageHandler<>(requestClass, handler);
         return new ResponseMessageBuilder<Res>();
     }
 
@@ -259,13 +602,7 @@ public abstract class Replica {
      *
      * */
     public <Req extends Request> void handlesMessage(RequestId requestId, Consumer<Message<Req>> handler, Class<Req> requestClass) {
-        var deserialize = createDeserializer(requestClass);
-        Function<Stage<Req>, Void> applyHandler = wrapConsumer(handler);
-        requestMap.put(requestId, (message)->{
-            deserialize
-                    .andThen(applyHandler)
-                    .apply(message);
-        });
+        handlers[requestId.getId()] = new OneWayMessageHandler<>(requestClass, handler);
     }
 
     protected <T> void handleResponse(Message<T> message) {
@@ -291,14 +628,7 @@ public abstract class Replica {
     //This is request-response  communication or rpc.
     //The sender expects a response to the request on the same connection.
     public <T  extends Request, Res> Replica handlesRequestAsync(RequestId requestId, Function<T, CompletableFuture<Res>> handler, Class<T> requestClass) {
-        Function<Message<RequestOrResponse>, Stage<T>> deserialize = createDeserializer(requestClass);
-        var handleAsync = asyncWrapHandler(handler);
-        requestMap.put(requestId, (message)-> {
-            deserialize
-                    .andThen(handleAsync)
-                    .andThen(asyncRespondToSender)
-                    .apply(message);
-        });
+        handlers[requestId.getId()] = new AsyncRequestHandler<>(requestClass, handler);
         return this;
     }
 
@@ -307,21 +637,7 @@ public abstract class Replica {
 
     private Map<RequestId, Class> responseClasses = new HashMap();
     public <T  extends Request, Res extends Request> SyncBuilder<Res> handlesRequestBlocking(RequestId requestId, Function<T, Res> handler, Class<T> requestClass) {
-        Function<Message<RequestOrResponse>, Stage<T>> deserialize = createDeserializer(requestClass);
-        var handleSync = wrapHandler(handler);
-        requestMap.put(requestId, (message)-> {
-            blockingExecutor.execute(() -> {
-            try {
-                deserialize
-                        .andThen(handleSync)
-                        .andThen(syncRespondToSender)
-                        .apply(message);
-            } catch(Exception e) {
-                RequestOrResponse request = message.getRequest();
-                message.getClientConnection().write(new RequestOrResponse(request.getRequestId(), serialize(e.getMessage()), request.getCorrelationId()).setError());
-            }
-            });
-        });
+        handlers[requestId.getId()] = new BlockingRequestHandler<>(requestClass, handler);
         return new SyncBuilder<Res>();
     }
 
@@ -332,88 +648,166 @@ public abstract class Replica {
     //Configures a handler to process a message from the peer in response to the message this peer has sent.
     //@see responseHandler and sendRequestToReplicas
     private <T extends Request> void respondsWithMessage(RequestId requestId, Class<T> responseClass) {
-        Function<Message<RequestOrResponse>, Stage<T>> deserializer = createDeserializer(responseClass);
-        requestMap.put(requestId, (message) -> {
-            deserializer.andThen(responseHandler).apply(message);
-        }); //class is not used for deserialization for responses.
+        handlers[requestId.getId()] = new ResponseMessageHandler<>(responseClass);
     }
 
 
-    Function<Stage, Void> sendMessageToSender = stage -> {
-        Message<RequestOrResponse> message = stage.getMessage();
-        Replica.this.sendOneway(message.getFromAddress(), stage.request, message.getCorrelationId());
-        return null;
-    };
+    //Handlers are bound to the request class and handler function when they are registered,
+    //so dispatching a message does not compose or allocate any functions.
+    interface MessageHandler {
+        void handle(Message<RequestOrResponse> message);
 
+        //class the message body is decoded to.
+        Class<?> messageClass();
+    }
 
-    Function<Stage, Void> syncRespondToSender = (stage) -> {
-        var response = stage.getRequest();
-        Message<RequestOrResponse> message = stage.getMessage();
-        RequestOrResponse request = (RequestOrResponse) stage.getMessage().getRequest();
-        var correlationId = request.getCorrelationId();
-        ClientConnection clientConnection = message.getClientConnection();
-        clientConnection.write(new RequestOrResponse(response.getRequestId().getId(),
-                                                serialize(response), correlationId));
-        return null;
-    };
-
-    Function<AsyncStage, Void> asyncRespondToSender = (stage) -> {
-        CompletableFuture<?> responseFuture = stage.getRequest();
-        Message<RequestOrResponse> message = stage.getMessage();
-        RequestOrResponse request = (RequestOrResponse) stage.getMessage().getRequest();
-        var correlationId = request.getCorrelationId();
-        responseFuture.whenComplete((res , throwable)-> {
-            ClientConnection clientConnection = message.getClientConnection();
-            if (throwable != null) {
-                clientConnection.write(new RequestOrResponse(request.getRequestId(), JsonSerDes.serialize(throwable.getMessage()), correlationId).setError());
-            } else {
-                clientConnection.write(new RequestOrResponse(request.getRequestId(), serialize(res), correlationId));
-            }
-        }).orTimeout(5000, TimeUnit.MILLISECONDS);
-        return null;
-    };
+    //One way message. The handler sends any messages it needs to itself.
+    class OneWayMessageHandler<Req extends Request> implements MessageHandler {
+        private final Class<Req> requestClass;
+        private final Consumer<Message<Req>> handler;
 
-    Function<Stage, Void> responseHandler = (stage) -> {
-        Message<RequestOrResponse> message = stage.message;
-        var response = message.getRequest();
-        Replica.this.requestWaitingList.handleResponse(response.getCorrelationId(), stage.request, response.fromAddress);
-        return null;
-    };
+        OneWayMessageHandler(Class<Req> requestClass, Consumer<Message<Req>> handler) {
+            this.requestClass = requestClass;
+            this.handler = handler;
+        }
+
+        @Override
+        public Class<?> messageClass() {
+            return requestClass;
+        }
 
-    private <Req extends Request, Res extends CompletableFuture> Function<Stage<Req>, AsyncStage> asyncWrapHandler(Function<Req, Res> handler) {
-        return (stage) -> {
-            Res response = handler.apply((Req) stage.request);
-            return new AsyncStage(stage.getMessage(), response);
-        };
+        @Override
+        public void handle(Message<RequestOrResponse> message) {
+            Req request = deserialize(message.getRequest(), requestClass);
+            handler.accept(new Message<>(request, message.header));
+        }
     }
 
-    private <Req extends Request, Res extends Request> Function<Stage<Req>, Stage> wrapHandler(Function<Req, Res> handler) {
-        Function<Stage<Req>, Stage> applyHandler = (stage) -> {
-            Res response = handler.apply((Req) stage.request);
-            return new Stage(stage.getMessage(), response);
-        };
-        return applyHandler;
+    //The response returned by the handler is sent as a separate message to the sender.
+    class RespondingMessageHandler<Req extends Request, Res extends Request> implements MessageHandler {
+        private final Class<Req> requestClass;
+        private final Function<Req, Res> handler;
+
+        RespondingMessageHandler(Class<Req> requestClass, Function<Req, Res> handler) {
+            this.requestClass = requestClass;
+            this.handler = handler;
+        }
+
+        @Override
+        public Class<?> messageClass() {
+            return requestClass;
+        }
+
+        @Override
+        public void handle(Message<RequestOrResponse> message) {
+            Res response = handler.apply(deserialize(message.getRequest(), requestClass));
+            sendOneway(message.getFromAddress(), response, message.getCorrelationId());
+        }
     }
 
-    private <Req extends Request, Void> Function<Stage<Req>, Void> wrapConsumer(Consumer<Message<Req>> handler) {
-        Function<Stage<Req>, Void> applyHandler = (stage) -> {
-            handler.accept(new Message(stage.getRequest(), stage.getMessage().header));
-            return null;
-        };
-        return applyHandler;
+    //Message sent by a peer in response to a message sent by this replica.
+    class ResponseMessageHandler<Res extends Request> implements MessageHandler {
+        private final Class<Res> responseClass;
+
+        ResponseMessageHandler(Class<Res> responseClass) {
+            this.responseClass = responseClass;
+        }
+
+        @Override
+        public Class<?> messageClass() {
+            return responseClass;
+        }
+
+        @Override
+        public void handle(Message<RequestOrResponse> message) {
+            RequestOrResponse response = message.getRequest();
+            requestWaitingList.handleResponse(response.getCorrelationId(), deserialize(response, responseClass), response.fromAddress);
+        }
     }
 
-    private <Req extends Request> Function<Message<RequestOrResponse>, Stage<Req>> createDeserializer(Class<Req> requestClass) {
-        Function<Message<RequestOrResponse>, Stage<Req>> deserialize = (message) -> {
+    //Request-response. The response is written on the connection the request came from, once the future completes.
+    class AsyncRequestHandler<Req extends Request, Res> implements MessageHandler {
+        private final Class<Req> requestClass;
+        private final Function<Req, CompletableFuture<Res>> handler;
+
+        AsyncRequestHandler(Class<Req> requestClass, Function<Req, CompletableFuture<Res>> handler) {
+            this.requestClass = requestClass;
+            this.handler = handler;
+        }
+
+        @Override
+        public Class<?> messageClass() {
+            return requestClass;
+        }
+
+        @Override
+        public void handle(Message<RequestOrResponse> message) {
             RequestOrResponse request = message.getRequest();
-            Req r = deserialize(requestClass, request);
-            return new Stage<>(message, r);
-        };
-        return deserialize;
+            CompletableFuture<Res> responseFuture = handler.apply(deserialize(request, requestClass));
+            var correlationId = request.getCorrelationId();
+            responseFuture.whenComplete((res , throwable)-> {
+                ClientConnection clientConnection = message.getClientConnection();
+                respond(clientConnection, () -> {
+                    if (throwable != null) {
+                        clientConnection.write(new RequestOrResponse(request.getRequestId(), JsonSerDes.serialize(throwable.getMessage()), correlationId).setError());
+                    } else {
+                        clientConnection.write(new RequestOrResponse(request.getRequestId(), serialize(res), correlationId));
+                    }
+                });
+            }).orTimeout(5000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    //With an encode stage, responses to a client are encoded and written, in order, on the stage thread for its connection.
+    private void respond(ClientConnection clientConnection, Runnable writeResponse) {
+        if (encodeStage == null) {
+            writeResponse.run();
+            return;
+        }
+        encodeStage.submit(clientConnection, writeResponse);
     }
 
-    private int newCorrelationId() {
-        return new Random().nextInt();
+    //Request-response. The handler runs on the blocking executor, and its response is written on the connection the request came from.
+    class BlockingRequestHandler<Req extends Request, Res extends Request> implements MessageHandler {
+        private final Class<Req> requestClass;
+        private final Function<Req, Res> handler;
+
+        BlockingRequestHandler(Class<Req> requestClass, Function<Req, Res> handler) {
+            this.requestClass = requestClass;
+            this.handler = handler;
+        }
+
+        @Override
+        public Class<?> messageClass() {
+            return requestClass;
+        }
+
+        @Override
+        public void handle(Message<RequestOrResponse> message) {
+            blockingExecutor.execute(() -> {
+                RequestOrResponse request = message.getRequest();
+                try {
+                    Res response = handler.apply(deserialize(request, requestClass));
+                    message.getClientConnection().write(new RequestOrResponse(response.getRequestId().getId(),
+                            serialize(response), request.getCorrelationId()));
+                } catch(Exception e) {
+                    message.getClientConnection().write(new RequestOrResponse(request.getRequestId(), serialize(e.getMessage()), request.getCorrelationId()).setError());
+                }
+            });
+        }
+    }
+
+    //Every request sent by this replica, including read repairs, takes its correlation id from here.
+    public int newCorrelationId() {
+        return correlationIds.next();
+    }
+
+    public CorrelationIdGenerator getCorrelationIds() {
+        return correlationIds;
+    }
+
+    public IntRequestWaitingList getRequestWaitingList() {
+        return requestWaitingList;
     }
 
     public int getNoOfReplicas() {
@@ -429,7 +823,10 @@ public abstract class Replica {
     }
 
     protected <T> T deserialize(RequestOrResponse request, Class<T> clazz) {
-        return JsonSerDes.deserialize(request.getMessageBodyJson(), clazz);
+        if (clazz.isInstance(request.decodedBody())) {
+            return clazz.cast(request.decodedBody());
+        }
+        return messageCodecs.deserialize(RequestId.valueOf(request.getRequestId()), request.getMessageBodyJson(), clazz);
     }
 
     public void dropMessagesTo(Replica n) {
@@ -452,23 +849,42 @@ public abstract class Replica {
         return getNoOfReplicas() / 2 + 1;
     }
 
-    private static byte[] serialize(Object e) {
-        return JsonSerDes.serialize(e);
+    //Messages sent to peers with a codec registered for their RequestId are encoded with it.
+    //Others, and all the responses written back on client connections, use JsonSerDes.
+    //The codec used depends on the wire format configured for the cluster.
+    protected <T> void registerCodec(RequestId requestId, MessageCodec<T> binaryCodec, MessageCodec<T> protobufCodec) {
+        switch (config.getWireFormat()) {
+            case BINARY -> messageCodecs.register(requestId, binaryCodec);
+            case PROTOBUF -> messageCodecs.register(requestId, protobufCodec);
+            case CBOR -> { } //everything goes through JsonSerDes.
+        }
+    }
+
+    public byte[] serialize(RequestId requestId, Object message) {
+        return messageCodecs.serialize(requestId, message);
     }
 
-    private <Req extends Request> Req deserialize(Class<Req> requestClass, RequestOrResponse request) {
-        return JsonSerDes.deserialize(request.getMessageBodyJson(), requestClass);
+    private static byte[] serialize(Object e) {
+        return JsonSerDes.serialize(e);
     }
 
     protected abstract void registerHandlers();
 
     public void shutdown() {
+        if (config.getTransportType() == TransportType.IN_PROCESS) {
+            InProcessTransport.unregister(peerConnectionAddress);
+        }
         peerListener.shudown();
         clientListener.shudown();
         singularUpdateQueue.shutdown();
+        Arrays.stream(lanes).forEach(BatchingSingularUpdateQueue::shutdown);
+        shutdownStage(decodeStage);
+        shutdownStage(encodeStage);
         heartbeatChecker.stop();
         heartBeatScheduler.stop();
+        peerSenders.values().forEach(PeerSender::shutdown);
         network.closeAllConnections();
+        requestWaitingList.close();
     }
 
     public Duration elapsedTimeSinceLastHeartbeat() {
@@ -1,8 +1,5 @@
 package replicate.common;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public enum RequestId {
     VoteRequest(0),
     VoteResponse(1),
@@ -56,8 +53,13 @@ public enum RequestId {
     PrepareOK(51),
     PrepareNAK(52), StartViewChange(53), DoViewChange(54), StartView(55);
 
-    public static RequestId valueOf(Integer id) {
-        return map.get(id);
+    //null for ids not known to this version.
+    public static RequestId valueOf(int id) {
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    public static int maxId() {
+        return byId.length - 1;
     }
 
     int id;
@@ -69,10 +71,16 @@ public enum RequestId {
         return id;
     }
 
-    private static final Map<Integer, RequestId> map = new HashMap<>();
+    //ids are small and dense, so they index an array.
+    private static final RequestId[] byId;
     static {
-        for (RequestId pageType : RequestId.values()) {
-            map.put(pageType.id, pageType);
+        int maxId = 0;
+        for (RequestId requestId : RequestId.values()) {
+            maxId = Math.max(maxId, requestId.id);
+        }
+        byId = new RequestId[maxId + 1];
+        for (RequestId requestId : RequestId.values()) {
+            byId[requestId.id] = requestId;
         }
     }
 }
@@ -4,6 +4,7 @@ import replicate.net.InetAddressAndPort;
 
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 public class RequestOrResponse {
     private Integer requestId;
@@ -12,12 +13,22 @@ public class RequestOrResponse {
     private Integer generation = -1;
     InetAddressAndPort fromAddress;
     boolean isError;
+    //body is deflated. @see replicate.net.FrameCompressor
+    boolean isCompressed;
+    //set on messages a replica delivers to itself. The body is encoded only if the bytes are asked for.
+    private transient Object decodedBody;
+    private transient Supplier<byte[]> bodyEncoder;
 
     public RequestOrResponse setError() {
         isError = true;
         return this;
     }
 
+    public RequestOrResponse setCompressed() {
+        isCompressed = true;
+        return this;
+    }
+
     //for jackson
     private RequestOrResponse(){}
 
@@ -58,9 +69,28 @@ public class RequestOrResponse {
     }
 
     public byte[] getMessageBodyJson() {
+        if (messageBodyJson == null && bodyEncoder != null) {
+            messageBodyJson = bodyEncoder.get();
+        }
         return messageBodyJson;
     }
 
+    public RequestOrResponse withDecodedBody(Object decodedBody, Supplier<byte[]> bodyEncoder) {
+        this.decodedBody = decodedBody;
+        this.bodyEncoder = bodyEncoder;
+        return this;
+    }
+
+    //the body is encoded when the bytes are first asked for, on the thread asking for them.
+    public RequestOrResponse withBodyEncoder(Supplier<byte[]> bodyEncoder) {
+        this.bodyEncoder = bodyEncoder;
+        return this;
+    }
+
+    public Object decodedBody() {
+        return decodedBody;
+    }
+
     public Integer getCorrelationId() {
         return correlationId;
     }
@@ -93,6 +123,7 @@ public class RequestOrResponse {
                 ", generation=" + generation +
                 ", fromAddress=" + fromAddress +
                 ", isError=" + isError +
+                ", isCompressed=" + isCompressed +
                 '}';
     }
 
@@ -103,5 +134,9 @@ public class RequestOrResponse {
     public boolean isError() {
         return isError;
     }
+
+    public boolean isCompressed() {
+        return isCompressed;
+    }
 }
 
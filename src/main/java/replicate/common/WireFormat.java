@@ -0,0 +1,12 @@
+package replicate.common;
+
+//Encoding of the bodies of the messages replicas send to each other.
+//All the replicas in a cluster need to use the same wire format.
+public enum WireFormat {
+    //Jackson CBOR for every message.
+    CBOR,
+    //hand written codecs for the busiest messages, CBOR for the rest.
+    BINARY,
+    //protobuf generated types for the busiest messages, CBOR for the rest.
+    PROTOBUF
+}
@@ -1,10 +1,26 @@
 package replicate.mpaxoswithheartbeats;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.HeartbeatRequestProto;
 
 public class HeartbeatRequest extends Request {
+    public static final MessageCodec<HeartbeatRequest> CODEC = MessageCodec.of(HeartbeatRequest.class,
+            (request, os) -> MessageCodec.writeMonotonicId(os, request.ballot),
+            is -> new HeartbeatRequest(MessageCodec.readMonotonicId(is)));
+
+    public static final MessageCodec<HeartbeatRequest> PROTOBUF_CODEC = MessageCodec.protobuf(HeartbeatRequest.class,
+            request -> {
+                var proto = HeartbeatRequestProto.newBuilder();
+                if (request.ballot != null) proto.setBallot(Protobufs.toProto(request.ballot));
+                return proto.build();
+            },
+            HeartbeatRequestProto.parser(),
+            proto -> new HeartbeatRequest(proto.hasBallot() ? Protobufs.fromProto(proto.getBallot()) : null));
+
     public final MonotonicId ballot;
 
     public HeartbeatRequest(MonotonicId ballot) {
@@ -48,6 +48,12 @@ public class MultiPaxos extends Replica {
 
     @Override
     protected void registerHandlers() {
+        //binary codecs for the messages sent for every client request.
+        registerCodec(RequestId.ProposeRequest, ProposalRequest.CODEC, ProposalRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.Commit, CommitRequest.CODEC, CommitRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.ProposeResponse, ProposalResponse.CODEC, ProposalResponse.PROTOBUF_CODEC);
+        registerCodec(RequestId.CommitResponse, CommitResponse.CODEC, CommitResponse.PROTOBUF_CODEC);
+
         //client rpc
         handlesRequestAsync(RequestId.ExcuteCommandRequest, this::handleClientExecuteCommand, ExecuteCommandRequest.class);
         handlesRequestAsync(RequestId.GetValueRequest, this::handleClientGetValueRequest, GetValueRequest.class);
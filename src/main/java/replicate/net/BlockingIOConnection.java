@@ -1,6 +1,5 @@
 package replicate.net;
 
-import replicate.common.JsonSerDes;
 import replicate.common.RequestOrResponse;
 
 import java.io.DataInputStream;
@@ -21,11 +20,9 @@ public class BlockingIOConnection implements ClientConnection {
     @Override
     public synchronized void write(RequestOrResponse response) {
         try {
-            var serializedMessage = JsonSerDes.serialize(response);
             var outputStream = clientSocket.getOutputStream();
             var dataStream = new DataOutputStream(outputStream);
-            dataStream.writeInt(serializedMessage.length);
-            dataStream.write(serializedMessage);
+            FrameCodec.writeFrame(dataStream, response);
             dataStream.flush();
 
         } catch (Exception e) {
@@ -41,7 +38,7 @@ public class BlockingIOConnection implements ClientConnection {
     }
 
     private RequestOrResponse deserialize(byte[] responseBytes) {
-        return JsonSerDes.deserialize(responseBytes, RequestOrResponse.class);
+        return FrameCodec.decode(responseBytes);
     }
 
 
@@ -1,49 +1,95 @@
 package replicate.net;
 
-import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
 
+/**
+ * Reads length prefixed frames from a channel into a pooled buffer.
+ * A single read can bring in several frames, all of which are handed over to the frame consumer.
+ * A partially read frame stays in the buffer until the rest of it arrives.
+ * If it does not fit, the buffer is swapped for a pooled buffer of a larger size class.
+ * Frames larger than maxFrameSize fail the read, so a corrupt or malicious size can not
+ * make us allocate arbitrary amounts of memory.
+ */
 public class BoundedByteBufferReceive {
-    ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
-    public ByteBuffer contentBuffer = null;
-    public Boolean complete = false;
-
-    public int readFrom(ReadableByteChannel socketChannel) throws IOException {
-        expectIncomplete();
-        int read = 0;
-        if (sizeBuffer.hasRemaining()) {
-            int bytesRead = socketChannel.read(sizeBuffer);
-            if (bytesRead < 0)
-                throw new EOFException();
-            read += bytesRead;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int SIZE_LENGTH = 4;
+
+    private final BufferPool bufferPool;
+    private final int maxFrameSize;
+    //kept ready for the next read from the channel.
+    private ByteBuffer buffer;
+
+    public BoundedByteBufferReceive(BufferPool bufferPool, int maxFrameSize) {
+        this.bufferPool = bufferPool;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * The frame passed to the consumer is a view over the pooled buffer.
+     * It is valid only till the consumer returns.
+     */
+    public synchronized int readFrom(ReadableByteChannel socketChannel, Consumer<ByteBuffer> frameConsumer) throws IOException {
+        if (buffer == null) {
+            buffer = bufferPool.acquire();
         }
-        if(contentBuffer == null && !sizeBuffer.hasRemaining()) {
-            sizeBuffer.rewind();
-            var size = sizeBuffer.getInt();
-            contentBuffer = ByteBuffer.allocate(size);
+        int read = socketChannel.read(buffer);
+        if (read > 0) {
+            buffer.flip();
+            readFrames(frameConsumer);
+            prepareForNextRead();
         }
-        // if we have a buffer read some stuff into it
-        if(contentBuffer != null) {
-            read = socketChannel.read(contentBuffer);
-            // did we get everything?
-            if(!contentBuffer.hasRemaining()) {
-                contentBuffer.rewind();
-                complete = true;
+        return read;
+    }
+
+    private void readFrames(Consumer<ByteBuffer> frameConsumer) throws IOException {
+        while (buffer.remaining() >= SIZE_LENGTH) {
+            int size = frameSize();
+            if (buffer.remaining() < SIZE_LENGTH + size) {
+                return;
             }
+            ByteBuffer frame = buffer.slice(buffer.position() + SIZE_LENGTH, size);
+            buffer.position(buffer.position() + SIZE_LENGTH + size);
+            frameConsumer.accept(frame);
         }
+    }
 
-        return read;
+    private int frameSize() throws IOException {
+        int size = buffer.getInt(buffer.position());
+        if (size < 0 || size > maxFrameSize) {
+            throw new IOException("Frame of " + size + " bytes exceeds max frame size of " + maxFrameSize + " bytes");
+        }
+        return size;
     }
 
-    protected void expectIncomplete() {
-        if(complete)
-            throw new RuntimeException("This operation cannot be completed on a complete request.");
+    private void prepareForNextRead() throws IOException {
+        if (!buffer.hasRemaining()) {
+            //go back to the smallest size class once a large frame is read.
+            if (buffer.capacity() > bufferPool.getChunkSize()) {
+                bufferPool.release(buffer);
+                buffer = bufferPool.acquire();
+            } else {
+                buffer.clear();
+            }
+            return;
+        }
+        int pendingFrameLength = buffer.remaining() >= SIZE_LENGTH ? SIZE_LENGTH + frameSize() : SIZE_LENGTH;
+        if (pendingFrameLength <= buffer.capacity()) {
+            buffer.compact();
+            return;
+        }
+        ByteBuffer larger = bufferPool.acquire(pendingFrameLength);
+        larger.put(buffer);
+        bufferPool.release(buffer);
+        buffer = larger;
     }
 
-    protected void expectComplete() {
-        if(!complete)
-            throw new RuntimeException("This operation cannot be completed on an incomplete request.");
+    public synchronized void release() {
+        if (buffer != null) {
+            bufferPool.release(buffer);
+            buffer = null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package replicate.net;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct buffers shared by the connections of a listener.
+ * Direct buffers are costly to allocate but avoid a copy on every socket read and write,
+ * so they are reused instead of being allocated per message.
+ * Buffers come in size classes, each double the previous one, starting with the chunk size.
+ * Fewer buffers are kept for the larger classes.
+ * Requests larger than the largest size class get a buffer which is not pooled.
+ */
+public class BufferPool {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    public static final int DEFAULT_MAX_POOLED_BUFFERS = 1024;
+    static final int NO_OF_SIZE_CLASSES = 8;
+
+    private final int chunkSize;
+    private final SizeClass[] sizeClasses = new SizeClass[NO_OF_SIZE_CLASSES];
+
+    public BufferPool() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    public BufferPool(int chunkSize, int maxPooledBuffers) {
+        this.chunkSize = chunkSize;
+        for (int i = 0; i < NO_OF_SIZE_CLASSES; i++) {
+            sizeClasses[i] = new SizeClass(chunkSize << i, Math.max(1, maxPooledBuffers >> i));
+        }
+    }
+
+    public ByteBuffer acquire() {
+        return acquire(chunkSize);
+    }
+
+    //buffer with at least the given capacity.
+    public ByteBuffer acquire(int minCapacity) {
+        for (SizeClass sizeClass : sizeClasses) {
+            if (sizeClass.bufferSize >= minCapacity) {
+                return sizeClass.acquire();
+            }
+        }
+        return ByteBuffer.allocateDirect(minCapacity);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return; //not from this pool.
+        }
+        for (SizeClass sizeClass : sizeClasses) {
+            if (sizeClass.bufferSize == buffer.capacity()) {
+                sizeClass.release(buffer);
+                return;
+            }
+        }
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getNoOfFreeBuffers() {
+        int free = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            free += sizeClass.noOfFreeBuffers.get();
+        }
+        return free;
+    }
+
+    private static class SizeClass {
+        final int bufferSize;
+        final int maxPooledBuffers;
+        final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+        final AtomicInteger noOfFreeBuffers = new AtomicInteger();
+
+        SizeClass(int bufferSize, int maxPooledBuffers) {
+            this.bufferSize = bufferSize;
+            this.maxPooledBuffers = maxPooledBuffers;
+        }
+
+        ByteBuffer acquire() {
+            ByteBuffer buffer = freeBuffers.poll();
+            if (buffer == null) {
+                return ByteBuffer.allocateDirect(bufferSize);
+            }
+            noOfFreeBuffers.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            if (noOfFreeBuffers.incrementAndGet() > maxPooledBuffers) {
+                noOfFreeBuffers.decrementAndGet();
+                return; //let GC reclaim it.
+            }
+            freeBuffers.add(buffer);
+        }
+    }
+}
@@ -6,4 +6,14 @@ import replicate.common.RequestOrResponse;
 public interface ClientConnection {
     void write(RequestOrResponse response);
     void close();
+
+    //Connections which buffer responses report false when too many bytes are waiting to be sent.
+    //Producers can then hold back, shed requests or send clients to another replica.
+    default boolean isWritable() {
+        return true;
+    }
+
+    default long getQueuedBytes() {
+        return 0;
+    }
 }
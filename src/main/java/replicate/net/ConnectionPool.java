@@ -0,0 +1,119 @@
+package replicate.net;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one long-lived SocketClient per peer address.
+ * A connection is created lazily on first use and reused as long as it is healthy.
+ * If a connection attempt fails, further attempts to the same peer are rejected
+ * for a backoff period which doubles on each consecutive failure,
+ * so that an unreachable peer does not cause a connect storm.
+ */
+public class ConnectionPool {
+    private static Logger logger = LogManager.getLogger(ConnectionPool.class);
+
+    static final long INITIAL_BACKOFF_MS = 50;
+    static final long MAX_BACKOFF_MS = 2000;
+
+    private final Map<InetAddressAndPort, SocketClient> connections = new ConcurrentHashMap<>();
+    private final Map<InetAddressAndPort, Backoff> backoffs = new ConcurrentHashMap<>();
+    //connects to one peer are done one at a time, without waiting for connects to other peers.
+    private final Map<InetAddressAndPort, Object> connectLocks = new ConcurrentHashMap<>();
+
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+
+    public SocketClient getOrCreate(InetAddressAndPort address) throws IOException {
+        SocketClient socketClient = connections.get(address);
+        if (socketClient != null && socketClient.isHealthy()) {
+            connectionsReused.incrementAndGet();
+            return socketClient;
+        }
+        synchronized (connectLocks.computeIfAbsent(address, a -> new Object())) {
+            socketClient = connections.get(address);
+            if (socketClient != null && socketClient.isHealthy()) {
+                connectionsReused.incrementAndGet();
+                return socketClient;
+            }
+            if (socketClient != null) {
+                connections.remove(address);
+                socketClient.close();
+            }
+            return connect(address);
+        }
+    }
+
+    private SocketClient connect(InetAddressAndPort address) throws IOException {
+        Backoff backoff = backoffs.get(address);
+        long now = System.nanoTime();
+        if (backoff != null && now < backoff.nextAttemptNanos) {
+            throw new IOException("Unable to connect to " + address + ". Backing off after " + backoff.failures + " failures");
+        }
+        try {
+            SocketClient socketClient = new SocketClient(address);
+            connections.put(address, socketClient);
+            backoffs.remove(address);
+            connectionsCreated.incrementAndGet();
+            return socketClient;
+
+        } catch (IOException e) {
+            connectFailures.incrementAndGet();
+            backoffs.put(address, nextBackoff(backoff, now));
+            throw e;
+        }
+    }
+
+    private Backoff nextBackoff(Backoff previous, long now) {
+        int failures = previous == null ? 1 : previous.failures + 1;
+        long delayMs = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(failures - 1, 16));
+        logger.info("Backing off connections for " + delayMs + "ms after " + failures + " failures");
+        return new Backoff(failures, now + TimeUnit.MILLISECONDS.toNanos(delayMs));
+    }
+
+    //Called when a send fails on a pooled connection.
+    //The next send reconnects.
+    public void evict(InetAddressAndPort address) {
+        SocketClient socketClient = connections.remove(address);
+        if (socketClient != null) {
+            socketClient.close();
+        }
+    }
+
+    public void resetBackoff(InetAddressAndPort address) {
+        backoffs.remove(address);
+    }
+
+    public void closeAll() {
+        for (SocketClient socketClient : connections.values()) {
+            socketClient.close();
+        }
+        connections.clear();
+        backoffs.clear();
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    public long getConnectFailures() {
+        return connectFailures.get();
+    }
+
+    private record Backoff(int failures, long nextAttemptNanos) {}
+}
@@ -0,0 +1,151 @@
+package replicate.net;
+
+import replicate.common.RequestOrResponse;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary layout of a RequestOrResponse on the wire.
+ * A fixed header is followed by the message body as raw bytes,
+ * so the body, which is already serialized by the sender, is not encoded a second time.
+ * The receiver routes and correlates a message by reading only the header.
+ * The body is decoded by the handler, which knows its type.
+ *
+ * Header: int requestId, int correlationId, int generation, byte flags and,
+ * if HAS_FROM_ADDRESS is set, the from address as a byte length, the address bytes and an int port.
+ * COMPRESSED marks a body deflated by the FrameCompressor of the sender.
+ *
+ * Frames are prefixed with an int size when written to a socket.
+ *
+ * A BatchRequest carries other messages to the same peer in its body,
+ * as an int count followed by their size prefixed frames.
+ */
+public class FrameCodec {
+    public static final byte IS_ERROR = 1;
+    public static final byte HAS_FROM_ADDRESS = 1 << 1;
+    public static final byte COMPRESSED = 1 << 2;
+
+    private static final int FIXED_HEADER_SIZE = 4 + 4 + 4 + 1;
+
+    public static byte[] encodeHeader(RequestOrResponse message) {
+        InetAddressAndPort fromAddress = message.getFromAddress();
+        byte[] address = fromAddress == null ? null : fromAddress.getAddress().getAddress();
+        int size = FIXED_HEADER_SIZE + (address == null ? 0 : 1 + address.length + 4);
+        ByteBuffer header = ByteBuffer.allocate(size);
+        header.putInt(message.getRequestId());
+        header.putInt(message.getCorrelationId());
+        header.putInt(message.getGeneration());
+        header.put(flags(message));
+        if (address != null) {
+            header.put((byte) address.length);
+            header.put(address);
+            header.putInt(fromAddress.getPort());
+        }
+        return header.array();
+    }
+
+    private static byte flags(RequestOrResponse message) {
+        byte flags = 0;
+        if (message.isError()) {
+            flags |= IS_ERROR;
+        }
+        if (message.getFromAddress() != null) {
+            flags |= HAS_FROM_ADDRESS;
+        }
+        if (message.isCompressed()) {
+            flags |= COMPRESSED;
+        }
+        return flags;
+    }
+
+    public static byte[] body(RequestOrResponse message) {
+        byte[] body = message.getMessageBodyJson();
+        return body == null ? new byte[0] : body;
+    }
+
+    //size prefixed frame, written without first copying header and body into a single array.
+    public static void writeFrame(DataOutputStream os, RequestOrResponse message) throws IOException {
+        byte[] header = encodeHeader(message);
+        byte[] body = body(message);
+        os.writeInt(header.length + body.length);
+        os.write(header);
+        os.write(body);
+    }
+
+    public static RequestOrResponse decode(byte[] frame) {
+        return decode(ByteBuffer.wrap(frame));
+    }
+
+    //the frame is consumed. The body is copied, so the frame's buffer can be reused once this returns.
+    public static RequestOrResponse decode(ByteBuffer frame) {
+        int requestId = frame.getInt();
+        int correlationId = frame.getInt();
+        int generation = frame.getInt();
+        byte flags = frame.get();
+        InetAddressAndPort fromAddress = null;
+        if ((flags & HAS_FROM_ADDRESS) != 0) {
+            fromAddress = readAddress(frame);
+        }
+        byte[] body = new byte[frame.remaining()];
+        frame.get(body);
+        RequestOrResponse message = new RequestOrResponse(generation, requestId, body, correlationId, fromAddress);
+        if ((flags & IS_ERROR) != 0) {
+            message.setError();
+        }
+        if ((flags & COMPRESSED) != 0) {
+            message.setCompressed();
+        }
+        return message;
+    }
+
+    public static byte[] encodeBatch(List<RequestOrResponse> messages) {
+        List<byte[]> headers = new ArrayList<>(messages.size());
+        int size = 4;
+        for (RequestOrResponse message : messages) {
+            byte[] header = encodeHeader(message);
+            headers.add(header);
+            size += 4 + header.length + body(message).length;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        batch.putInt(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            byte[] header = headers.get(i);
+            byte[] body = body(messages.get(i));
+            batch.putInt(header.length + body.length);
+            batch.put(header);
+            batch.put(body);
+        }
+        return batch.array();
+    }
+
+    //messages are returned in the order they were added to the batch.
+    public static List<RequestOrResponse> decodeBatch(byte[] batchBody) {
+        ByteBuffer batch = ByteBuffer.wrap(batchBody);
+        int count = batch.getInt();
+        List<RequestOrResponse> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int size = batch.getInt();
+            ByteBuffer frame = batch.slice();
+            frame.limit(size);
+            messages.add(decode(frame));
+            batch.position(batch.position() + size);
+        }
+        return messages;
+    }
+
+    private static InetAddressAndPort readAddress(ByteBuffer frame) {
+        byte[] address = new byte[frame.get()];
+        frame.get(address);
+        int port = frame.getInt();
+        try {
+            return new InetAddressAndPort(InetAddress.getByAddress(address), port);
+        } catch (IOException e) {
+            throw new NetworkException(e);
+        }
+    }
+}
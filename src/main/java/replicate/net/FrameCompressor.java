@@ -0,0 +1,163 @@
+package replicate.net;
+
+import replicate.common.RequestOrResponse;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates message bodies larger than a threshold, e.g. the logs carried by view changes
+ * and leader elections. Small messages are sent as they are, because compressing them costs
+ * more CPU than the bytes it saves.
+ * Compressed messages are marked with FrameCodec.COMPRESSED, so a receiver knows which
+ * frames to inflate whatever the threshold configured on it.
+ *
+ * Compressed body: int uncompressed length followed by the deflated bytes.
+ * The length is read from the wire, so it is checked against the max frame size
+ * before the body is allocated.
+ */
+public class FrameCompressor {
+    //Deflater and Inflater hold native memory, so they are reused by each thread.
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private final int thresholdBytes;
+    private final int maxFrameSize;
+
+    private final LongAdder framesCompressed = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder framesDecompressed = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    //0 disables compression.
+    public FrameCompressor(int thresholdBytes) {
+        this(thresholdBytes, BoundedByteBufferReceive.DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    public FrameCompressor(int thresholdBytes, int maxFrameSize) {
+        this.thresholdBytes = thresholdBytes;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public boolean isEnabled() {
+        return thresholdBytes > 0;
+    }
+
+    public RequestOrResponse compress(RequestOrResponse message) {
+        byte[] body = message.getMessageBodyJson();
+        if (!isEnabled() || message.isCompressed() || body == null || body.length < thresholdBytes) {
+            return message;
+        }
+        long start = System.nanoTime();
+        byte[] compressed = deflate(body);
+        compressNanos.add(System.nanoTime() - start);
+        if (compressed.length >= body.length) {
+            return message; //incompressible
+        }
+        framesCompressed.increment();
+        uncompressedBytes.add(body.length);
+        compressedBytes.add(compressed.length);
+        return copyWithBody(message, compressed).setCompressed();
+    }
+
+    public RequestOrResponse decompress(RequestOrResponse message) {
+        if (!message.isCompressed()) {
+            return message;
+        }
+        long start = System.nanoTime();
+        byte[] body = inflate(message.getMessageBodyJson());
+        decompressNanos.add(System.nanoTime() - start);
+        framesDecompressed.increment();
+        return copyWithBody(message, body);
+    }
+
+    private static RequestOrResponse copyWithBody(RequestOrResponse message, byte[] body) {
+        RequestOrResponse copy = new RequestOrResponse(message.getGeneration(), message.getRequestId(), body, message.getCorrelationId(), message.getFromAddress());
+        if (message.isError()) {
+            copy.setError();
+        }
+        return copy;
+    }
+
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        //an incompressible body is sent as it is, so the output never needs to be larger than the input.
+        byte[] output = new byte[4 + body.length];
+        ByteBuffer.wrap(output).putInt(body.length);
+        int length = 4;
+        while (!deflater.finished() && length < output.length) {
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        if (!deflater.finished()) {
+            return output; //as long as the body, so not used.
+        }
+        return Arrays.copyOf(output, length);
+    }
+
+    private byte[] inflate(byte[] compressed) {
+        if (compressed == null || compressed.length < 4) {
+            throw new NetworkException("Compressed body is too short to have its uncompressed length");
+        }
+        int uncompressedLength = ByteBuffer.wrap(compressed).getInt();
+        //bodies are compressed only if they are at least thresholdBytes, so none is empty.
+        if (uncompressedLength <= 0 || uncompressedLength > maxFrameSize) {
+            throw new NetworkException("Uncompressed length of " + uncompressedLength + " bytes is not between 1 and max frame size of " + maxFrameSize + " bytes");
+        }
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(compressed, 4, compressed.length - 4);
+        byte[] body = new byte[uncompressedLength];
+        try {
+            int length = 0;
+            while (length < uncompressedLength && !inflater.finished()) {
+                int inflated = inflater.inflate(body, length, uncompressedLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != uncompressedLength) {
+                throw new NetworkException("Compressed body is truncated. Expected " + uncompressedLength + " bytes, inflated " + length);
+            }
+        } catch (DataFormatException e) {
+            throw new NetworkException("Unable to inflate message body", e);
+        }
+        return body;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    public long getFramesCompressed() {
+        return framesCompressed.sum();
+    }
+
+    //uncompressed size over compressed size of the compressed frames.
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.sum();
+        return compressed == 0 ? 1.0 : (double) uncompressedBytes.sum() / compressed;
+    }
+
+    //includes the time spent on bodies which turned out to be incompressible.
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    public long getFramesDecompressed() {
+        return framesDecompressed.sum();
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+}
@@ -0,0 +1,93 @@
+package replicate.net;
+
+import replicate.common.Logging;
+import replicate.common.Message;
+import replicate.common.RequestId;
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers one way messages to replicas running in the same JVM without going through sockets.
+ * Replicas register the consumer for their peer address. Messages sent to a registered address
+ * are handed to its consumer on a shared dispatcher, in the order they were sent to that address,
+ * so a sender is never blocked by a full update queue of the receiver.
+ *
+ * With encodeFrames, every message is still encoded into a frame and decoded again,
+ * to catch messages which would not survive the wire.
+ */
+public class InProcessTransport implements PeerTransport, Logging {
+    private static final Map<InetAddressAndPort, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private static final OrderedDispatcher dispatcher = new OrderedDispatcher("InProcessDispatcher", Runtime.getRuntime().availableProcessors());
+
+    private final boolean encodeFrames;
+    private final AtomicLong messagesDelivered = new AtomicLong();
+
+    public InProcessTransport() {
+        this(false);
+    }
+
+    public InProcessTransport(boolean encodeFrames) {
+        this.encodeFrames = encodeFrames;
+    }
+
+    public static void register(InetAddressAndPort address, RequestConsumer consumer) {
+        endpoints.put(address, new Endpoint(consumer, dispatcher.newSerialExecutor()));
+    }
+
+    public static void unregister(InetAddressAndPort address) {
+        endpoints.remove(address);
+    }
+
+    @Override
+    public void sendOneway(InetAddressAndPort address, RequestOrResponse message) throws IOException {
+        Endpoint endpoint = endpoints.get(address);
+        if (endpoint == null) {
+            throw new IOException("No replica listening on " + address + " in this process");
+        }
+        RequestOrResponse delivered = encodeFrames ? roundTrip(message) : message;
+        var header = new Message.Header(delivered.getFromAddress(), delivered.getCorrelationId(), RequestId.valueOf(delivered.getRequestId()));
+        endpoint.executor().execute(() -> endpoint.consumer().accept(new Message<>(delivered, header, DISCARDING_CONNECTION)));
+        messagesDelivered.incrementAndGet();
+    }
+
+    private static RequestOrResponse roundTrip(RequestOrResponse message) {
+        byte[] header = FrameCodec.encodeHeader(message);
+        byte[] body = FrameCodec.body(message);
+        ByteBuffer frame = ByteBuffer.allocate(header.length + body.length);
+        frame.put(header).put(body).flip();
+        return FrameCodec.decode(frame);
+    }
+
+    //There are no connections to drop. Fault injection is done by Network before the message gets here.
+    @Override
+    public void close(InetAddressAndPort address) {
+    }
+
+    @Override
+    public void closeAll() {
+    }
+
+    public long getMessagesDelivered() {
+        return messagesDelivered.get();
+    }
+
+    //Peers reply with separate messages. Anything written back on a peer connection
+    //is discarded by the socket transports as well.
+    private static final ClientConnection DISCARDING_CONNECTION = new ClientConnection() {
+        @Override
+        public void write(RequestOrResponse response) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private record Endpoint(RequestConsumer consumer, Executor executor) {}
+}
@@ -0,0 +1,316 @@
+package replicate.net;
+
+import replicate.common.Logging;
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Client side counterpart of NIOSocketListener.
+ * sendOneway only serializes the message and queues it on the peer's outbound buffer.
+ * A single I/O thread connects to the peers and flushes the buffers when the sockets are writable.
+ * So a slow or dead peer never blocks the thread sending the messages.
+ *
+ * Messages sent to peers are one way. The peer replies with a separate message on its own connection,
+ * so anything read on these channels is discarded. Reads are only used to detect closed connections.
+ * Messages queued for a peer which can not be connected to are dropped, and the failure
+ * is reported to the sender on the I/O thread.
+ */
+public class NIOClientTransport extends Thread implements PeerTransport, Logging {
+    static final long INITIAL_BACKOFF_MS = 50;
+    static final long MAX_BACKOFF_MS = 2000;
+    private static final int MAX_BUFFERS_PER_WRITE = 64;
+
+    private final Selector selector;
+    private final Map<InetAddressAndPort, PeerChannel> channels = new ConcurrentHashMap<>();
+    private final Queue<PeerChannel> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer discardBuffer = ByteBuffer.allocate(1024);
+    private volatile boolean running = true;
+
+    private final AtomicLong messagesDropped = new AtomicLong();
+
+    public NIOClientTransport() throws IOException {
+        super("NIOClientTransport");
+        setDaemon(true);
+        this.selector = Selector.open();
+    }
+
+    @Override
+    public void sendOneway(InetAddressAndPort address, RequestOrResponse message) throws IOException {
+        sendOneway(address, message, e -> {});
+    }
+
+    @Override
+    public void sendOneway(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        PeerChannel peerChannel = channels.computeIfAbsent(address, PeerChannel::new);
+        if (peerChannel.isBackingOff()) {
+            throw new IOException("Unable to connect to " + address + ". Backing off after " + peerChannel.failures + " failures");
+        }
+        peerChannel.enqueue(new OutboundFrame(frame(message), onFailure));
+        pendingChanges.add(peerChannel);
+        selector.wakeup();
+    }
+
+    private ByteBuffer frame(RequestOrResponse message) {
+        byte[] header = FrameCodec.encodeHeader(message);
+        byte[] body = FrameCodec.body(message);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + header.length + body.length);
+        buffer.putInt(header.length + body.length);
+        buffer.put(header);
+        buffer.put(body);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                processPendingChanges();
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (Exception e) {
+                getLogger().error(e);
+            }
+        }
+        closeChannels();
+    }
+
+    private void processPendingChanges() {
+        PeerChannel peerChannel;
+        while ((peerChannel = pendingChanges.poll()) != null) {
+            if (peerChannel.isClosed()) {
+                //also fails messages queued by senders which got the channel before it was closed.
+                peerChannel.disconnect();
+                peerChannel.dropQueuedMessages(new IOException("Connection to " + peerChannel.address + " closed"));
+            } else if (peerChannel.channel == null) {
+                peerChannel.connect();
+            } else if (peerChannel.key != null && peerChannel.key.isValid() && peerChannel.channel.isConnected()) {
+                peerChannel.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        PeerChannel peerChannel = (PeerChannel) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                peerChannel.finishConnect();
+            }
+            if (key.isValid() && key.isReadable()) {
+                peerChannel.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                peerChannel.flush();
+            }
+        } catch (CancelledKeyException e) {
+            peerChannel.disconnect();
+        } catch (IOException e) {
+            getLogger().debug("Connection to " + peerChannel.address + " failed. " + e.getMessage());
+            peerChannel.connectFailed();
+        }
+    }
+
+    @Override
+    public void close(InetAddressAndPort address) {
+        PeerChannel peerChannel = channels.remove(address);
+        if (peerChannel != null) {
+            peerChannel.closed = true;
+            pendingChanges.add(peerChannel);
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void closeAll() {
+        running = false;
+        selector.wakeup();
+        try {
+            join(1000);
+        } catch (InterruptedException e) {
+            getLogger().warn("Interrupted", e);
+        }
+    }
+
+    private void closeChannels() {
+        for (PeerChannel peerChannel : channels.values()) {
+            peerChannel.disconnect();
+            peerChannel.dropQueuedMessages(new IOException("Connection to " + peerChannel.address + " closed"));
+        }
+        channels.clear();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            getLogger().warn("ignoring exception during selector close", e);
+        }
+    }
+
+    public int getQueuedMessages(InetAddressAndPort address) {
+        PeerChannel peerChannel = channels.get(address);
+        return peerChannel == null ? 0 : peerChannel.outgoingBuffers.size();
+    }
+
+    public long getMessagesDropped() {
+        return messagesDropped.get();
+    }
+
+    record OutboundFrame(ByteBuffer buffer, Consumer<IOException> onFailure) {}
+
+    //State of the connection to a single peer.
+    //Producers only append to outgoingBuffers. Everything else is done on the I/O thread.
+    class PeerChannel {
+        final InetAddressAndPort address;
+        final Queue<OutboundFrame> outgoingBuffers = new ConcurrentLinkedQueue<>();
+        SocketChannel channel;
+        SelectionKey key;
+        volatile boolean closed;
+        volatile int failures;
+        volatile long nextAttemptNanos;
+
+        PeerChannel(InetAddressAndPort address) {
+            this.address = address;
+        }
+
+        void enqueue(OutboundFrame frame) {
+            outgoingBuffers.add(frame);
+        }
+
+        boolean isBackingOff() {
+            return failures > 0 && System.nanoTime() < nextAttemptNanos;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        void connect() {
+            if (isBackingOff()) {
+                dropQueuedMessages(new IOException("Unable to connect to " + address + ". Backing off after " + failures + " failures"));
+                return;
+            }
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                boolean connected = channel.connect(new InetSocketAddress(address.getAddress(), address.getPort()));
+                key = channel.register(selector, connected ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, this);
+                if (connected) {
+                    failures = 0;
+                }
+            } catch (IOException e) {
+                getLogger().debug("Unable to connect to " + address + ". " + e.getMessage());
+                connectFailed();
+            }
+        }
+
+        void finishConnect() throws IOException {
+            if (channel.finishConnect()) {
+                failures = 0;
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void flush() throws IOException {
+            int count = 0;
+            ByteBuffer[] buffers = new ByteBuffer[Math.min(outgoingBuffers.size(), MAX_BUFFERS_PER_WRITE)];
+            for (OutboundFrame frame : outgoingBuffers) {
+                if (count == buffers.length) {
+                    break;
+                }
+                buffers[count++] = frame.buffer();
+            }
+            if (count > 0) {
+                channel.write(buffers, 0, count);
+            }
+            while (!outgoingBuffers.isEmpty() && !outgoingBuffers.peek().buffer().hasRemaining()) {
+                outgoingBuffers.poll();
+            }
+            if (outgoingBuffers.isEmpty()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void read() throws IOException {
+            discardBuffer.clear();
+            if (channel.read(discardBuffer) < 0) {
+                //peer closed the connection. Reconnect if there are messages waiting.
+                disconnect();
+                if (!outgoingBuffers.isEmpty()) {
+                    connect();
+                }
+            }
+        }
+
+        void connectFailed() {
+            disconnect();
+            failures++;
+            long delayMs = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(failures - 1, 16));
+            nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            dropQueuedMessages(new IOException("Connection to " + address + " failed"));
+        }
+
+        //Messages are one way, so the senders are told about the failure instead of
+        //waiting for RequestWaitingList to expire their requests.
+        private void dropQueuedMessages(IOException failure) {
+            int dropped = 0;
+            OutboundFrame frame;
+            while ((frame = outgoingBuffers.poll()) != null) {
+                dropped++;
+                try {
+                    frame.onFailure().accept(failure);
+                } catch (Exception e) {
+                    getLogger().error("Failure callback for message to " + address + " failed", e);
+                }
+            }
+            if (dropped > 0) {
+                messagesDropped.addAndGet(dropped);
+                getLogger().info("Dropped " + dropped + " messages to " + address);
+            }
+        }
+
+        //A frame partly written to the closed connection is sent again from its start on the next one.
+        //Otherwise the peer would start reading the next connection in the middle of the frame.
+        private void rewindPartlySentFrame() {
+            OutboundFrame head = outgoingBuffers.peek();
+            if (head != null) {
+                head.buffer().rewind();
+            }
+        }
+
+        void disconnect() {
+            rewindPartlySentFrame();
+            if (key != null) {
+                key.cancel();
+                key = null;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    getLogger().warn("ignoring exception during socketchannel close", e);
+                }
+                channel = null;
+            }
+        }
+    }
+}
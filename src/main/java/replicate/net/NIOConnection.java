@@ -10,8 +10,6 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 
 public class NIOConnection implements ClientConnection, Logging {
     private static final Logger LOG = LogManager.getLogger(NIOConnection.class);
@@ -19,15 +17,21 @@ public class NIOConnection implements ClientConnection, Logging {
     private SocketChannel sock;
     private SelectionKey sk;
     private NIOSocketListener server;
-    private boolean closed;
-    private BoundedByteBufferReceive receive = null;
-    LinkedBlockingQueue<ByteBuffer> outgoingBuffers = new LinkedBlockingQueue<ByteBuffer>();
+    //set under the outbound lock, so no response is appended to the ring after it is released.
+    private volatile boolean closed;
+    private final BoundedByteBufferReceive receive;
+    //responses are encoded straight into pooled buffers and flushed together.
+    private final OutboundRing outbound;
+    private volatile boolean writable = true;
     private RequestConsumer requestConsumer;
     public NIOConnection(SocketChannel sock, SelectionKey sk, NIOSocketListener server, RequestConsumer consumer) {
         this.sock = sock;
         this.sk = sk;
         this.server = server;
         this.requestConsumer = consumer;
+        this.executor = server.getDispatcher().newSerialExecutor();
+        this.outbound = new OutboundRing(server.getBufferPool());
+        this.receive = new BoundedByteBufferReceive(server.getBufferPool(), server.getMaxFrameSize());
     }
 
     void doIO(SelectionKey selectionKey) throws InterruptedException {
@@ -40,16 +44,18 @@ public class NIOConnection implements ClientConnection, Logging {
             }
             //<codeFragment name="nioWrite">
             if (selectionKey.isWritable()) {
-                if (outgoingBuffers.size() > 0) {
-                    long bytesSent = sock.write(outgoingBuffers.toArray(ByteBuffer[]::new));
-                    for (ByteBuffer outgoingBuffer : outgoingBuffers) {
-                        if (!outgoingBuffer.hasRemaining()) {
-                            outgoingBuffers.remove(outgoingBuffer);
-                        }
+                //OP_WRITE is changed under the same lock as the ring, so a response written
+                //concurrently can not be left behind with OP_WRITE cleared.
+                synchronized (outbound) {
+                    int interestOps = selectionKey.interestOps();
+                    if (outbound.writeTo(sock)) {
+                        interestOps &= ~SelectionKey.OP_WRITE;
                     }
-                    if (outgoingBuffers.isEmpty()) {
-                        selectionKey.interestOps(selectionKey.interestOps() & (~SelectionKey.OP_WRITE));
+                    if (!writable && outbound.queuedBytes() <= server.getLowWatermarkBytes()) {
+                        writable = true;
+                        interestOps |= SelectionKey.OP_READ; //resume reading requests.
                     }
+                    selectionKey.interestOps(interestOps);
                 }
             }
             //</codeFragment>
@@ -61,40 +67,37 @@ public class NIOConnection implements ClientConnection, Logging {
         }
     }
 
-    Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    //requests from this connection are handed to the consumer in the order they are read.
+    private final Executor executor;
 
     private void read(SelectionKey key) throws Exception {
         var socketChannel = (SocketChannel)key.channel();
-        if (receive == null) {
-            receive = new BoundedByteBufferReceive();
-        }
-        int bytesRead = receive.readFrom(socketChannel);
+        //all the complete frames read are dispatched. A partial frame waits for the next read.
+        int bytesRead = receive.readFrom(socketChannel, this::dispatch);
         if (bytesRead < 0) {
             close();
-        } else if (receive.complete) {
-            RequestOrResponse deserialize = JsonSerDes.deserialize(receive.contentBuffer.flip().array(), RequestOrResponse.class);
-            RequestOrResponse request = deserialize;
-
-            //TODO:submit request
-            //requestChannel.sendRequest(new RequestWrapper(id, request, key));
-            RequestId requestId = RequestId.valueOf(request.getRequestId());
-            //submit for execution.
-            var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), requestId);
-            executor.execute(()-> requestConsumer.accept(new Message<RequestOrResponse>(request, header, this)));
-            receive = null; //ready to read next request.
-        } else {
-            // more reading to be done
-            getLogger().trace("Did not finish reading, registering for read again on connection " + socketChannel.getRemoteAddress());
-            key.interestOps(SelectionKey.OP_READ);
         }
     }
 
+    private void dispatch(ByteBuffer frame) {
+        //only the header is decoded here. The body is left for the handler.
+        RequestOrResponse request = FrameCodec.decode(frame);
+        RequestId requestId = RequestId.valueOf(request.getRequestId());
+        //submit for execution.
+        var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), requestId);
+        executor.execute(()-> requestConsumer.accept(new Message<RequestOrResponse>(request, header, this)));
+    }
+
     @Override
     public void close() {
-        if (closed) {
-            return;
+        synchronized (outbound) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            outbound.release();
         }
-        closed = true;
+        receive.release();
         synchronized (server.cnxns) {
             server.cnxns.remove(this);
         }
@@ -147,21 +150,44 @@ public class NIOConnection implements ClientConnection, Logging {
     //<codeFragment name="nioClientConnectionWrite">
     @Override
     public void write(RequestOrResponse response) {
-        ByteBuffer responseBuffer = serializeResponse(response);
-        outgoingBuffers.add(responseBuffer);
-        sk.selector().wakeup();
-        if (sk.isValid()) {
-            sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
+        byte[] header = FrameCodec.encodeHeader(response);
+        byte[] body = FrameCodec.body(response);
+        synchronized (outbound) {
+            if (closed) {
+                return; //the client is gone, and the ring's buffers are back in the pool.
+            }
+            //selector needs to be woken up only when the ring was empty.
+            //Otherwise OP_WRITE is already set and the pending flush will pick this response up.
+            boolean wasEmpty = outbound.appendFrame(header, body);
+            if (!sk.isValid()) {
+                return;
+            }
+            int interestOps = sk.interestOps();
+            if (wasEmpty) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+            if (writable && outbound.queuedBytes() > server.getHighWatermarkBytes()) {
+                //stop reading new requests till the client catches up. TCP pushes back on the client.
+                writable = false;
+                server.markUnwritable();
+                interestOps &= ~SelectionKey.OP_READ;
+            }
+            sk.interestOps(interestOps);
+            if (wasEmpty) {
+                sk.selector().wakeup();
+            }
         }
     }
 
-    private ByteBuffer serializeResponse(RequestOrResponse response) {
-        byte[] serializedResponse = JsonSerDes.serialize(response);
-        ByteBuffer responseBuffer = ByteBuffer.allocate(4 + serializedResponse.length);
-        responseBuffer.putInt(serializedResponse.length);
-        responseBuffer.put(serializedResponse);
-        responseBuffer.flip();
-        return responseBuffer;
+    //false once the queued bytes go above the high watermark, till they are flushed below the low watermark.
+    @Override
+    public boolean isWritable() {
+        return writable;
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return outbound.queuedBytes();
     }
     //</codeFragment>
 }
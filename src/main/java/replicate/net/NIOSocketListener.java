@@ -1,5 +1,6 @@
 package replicate.net;
 
+import replicate.common.Config;
 import replicate.common.Logging;
 
 import java.io.IOException;
@@ -9,57 +10,152 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class NIOSocketListener extends Thread implements Logging {
+/**
+ * Accepts connections and does I/O on them with selectors.
+ * With zero selector threads, the listener thread accepts, reads and writes for all the connections.
+ * Otherwise the listener thread only accepts connections and hands them over
+ * round-robin to the given number of selector threads, each of which reads and writes
+ * for its own set of connections.
+ * Requests read from all the connections are handed to the consumer by one shared OrderedDispatcher.
+ */
+public class NIOSocketListener extends Thread implements RequestListener, Logging {
     private final ServerSocketChannel ss;
     private final Selector selector;
     private final RequestConsumer requestConsumer;
+    private final List<SelectorThread> selectorThreads = new ArrayList<>();
+    private int nextSelectorThread = 0;
+    private final OrderedDispatcher dispatcher;
+    private final BufferPool bufferPool = new BufferPool();
+    private final int maxFrameSize;
+    private final long lowWatermarkBytes;
+    private final long highWatermarkBytes;
+    private final AtomicLong unwritableTransitions = new AtomicLong();
 
     public NIOSocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress) throws IOException {
+        this(requestConsumer, listenAddress, new Config(null));
+    }
+
+    public NIOSocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress, Config config) throws IOException {
         this.requestConsumer = requestConsumer;
+        this.maxFrameSize = config.getMaxFrameSize();
+        this.lowWatermarkBytes = config.getOutboundLowWatermarkBytes();
+        this.highWatermarkBytes = config.getOutboundHighWatermarkBytes();
+        this.dispatcher = new OrderedDispatcher("NIODispatcher-" + listenAddress, config.getDispatchThreads());
         this.selector = Selector.open();
         this.ss = ServerSocketChannel.open();
         ss.socket().bind(new InetSocketAddress(listenAddress.getAddress(), listenAddress.getPort()));
         ss.configureBlocking(false);
         ss.register(selector, SelectionKey.OP_ACCEPT);
+        for (int i = 0; i < config.getSelectorThreads(); i++) {
+            selectorThreads.add(new SelectorThread("NIOSelector-" + listenAddress + "-" + i));
+        }
     }
     HashSet<NIOConnection> cnxns = new HashSet<NIOConnection>();
+
+    @Override
+    public synchronized void start() {
+        selectorThreads.forEach(Thread::start);
+        super.start();
+    }
+
     @Override
     public void run() {
         while (!ss.socket().isClosed()) {
             try {
                 selector.select(1000);
-                Set<SelectionKey> selected;
-                synchronized (this) {
-                    selected = selector.selectedKeys();
-                }
-                ArrayList<SelectionKey> selectedList = new ArrayList<SelectionKey>(
-                        selected);
-                Collections.shuffle(selectedList);
-                for (SelectionKey k : selectedList) {
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey k = selected.next();
+                    selected.remove();
                     if ((k.readyOps() & SelectionKey.OP_ACCEPT) != 0) {
-                        SocketChannel sc = ((ServerSocketChannel) k
-                                .channel()).accept();
-                        sc.configureBlocking(false);
-                        SelectionKey sk = sc.register(selector,
-                                SelectionKey.OP_READ);
-                        NIOConnection cnxn = createConnection(sc, sk);
-                        sk.attach(cnxn);
-                        addCnxn(cnxn);
+                        accept((ServerSocketChannel) k.channel());
                     } else if ((k.readyOps() & (SelectionKey.OP_READ | SelectionKey.OP_WRITE)) != 0) {
                         NIOConnection c = (NIOConnection) k.attachment();
                         c.doIO(k);
                     }
                 }
-                selected.clear();
             } catch (Exception e) {
                 getLogger().error(e);
             }
         }
     }
 
+    private void accept(ServerSocketChannel serverSocketChannel) throws IOException {
+        SocketChannel sc = serverSocketChannel.accept();
+        if (sc == null) {
+            return;
+        }
+        sc.configureBlocking(false);
+        if (selectorThreads.isEmpty()) {
+            register(sc, selector);
+            return;
+        }
+        SelectorThread selectorThread = selectorThreads.get(nextSelectorThread);
+        nextSelectorThread = (nextSelectorThread + 1) % selectorThreads.size();
+        selectorThread.addConnection(sc);
+    }
+
+    private void register(SocketChannel sc, Selector selector) throws IOException {
+        SelectionKey sk = sc.register(selector, SelectionKey.OP_READ);
+        NIOConnection cnxn = createConnection(sc, sk);
+        sk.attach(cnxn);
+        addCnxn(cnxn);
+    }
+
+    public OrderedDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public long getLowWatermarkBytes() {
+        return lowWatermarkBytes;
+    }
+
+    public long getHighWatermarkBytes() {
+        return highWatermarkBytes;
+    }
+
+    void markUnwritable() {
+        unwritableTransitions.incrementAndGet();
+    }
+
+    //number of times a connection went above the high watermark.
+    public long getUnwritableTransitions() {
+        return unwritableTransitions.get();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        synchronized (cnxns) {
+            return cnxns.stream().mapToLong(NIOConnection::getQueuedBytes).sum();
+        }
+    }
+
+    //connections each selector thread has registered, in the order of the threads.
+    List<Long> getConnectionsPerSelectorThread() {
+        return selectorThreads.stream().map(selectorThread -> selectorThread.connectionsRegistered.get()).toList();
+    }
+
+    public long getUnwritableConnections() {
+        synchronized (cnxns) {
+            return cnxns.stream().filter(c -> !c.isWritable()).count();
+        }
+    }
+
     private void addCnxn(NIOConnection cnxn) {
-        this.cnxns.add(cnxn);
+        synchronized (cnxns) {
+            this.cnxns.add(cnxn);
+        }
     }
 
     protected NIOConnection createConnection(SocketChannel sock,
@@ -75,6 +171,10 @@ public class NIOSocketListener extends Thread implements Logging {
             clear();
             this.interrupt();
             this.join();
+            for (SelectorThread selectorThread : selectorThreads) {
+                selectorThread.shutdown();
+            }
+            dispatcher.shutdown();
         } catch (InterruptedException e) {
             getLogger().warn("Interrupted",e);
         } catch (Exception e) {
@@ -99,4 +199,66 @@ public class NIOSocketListener extends Thread implements Logging {
         }
 
     }
+
+    //Reads and writes for the connections handed over by the listener thread.
+    class SelectorThread extends Thread implements Logging {
+        private final Selector selector;
+        private final Queue<SocketChannel> acceptedConnections = new ConcurrentLinkedQueue<>();
+        private final AtomicLong connectionsRegistered = new AtomicLong();
+        private volatile boolean isRunning = true;
+
+        SelectorThread(String name) throws IOException {
+            super(name);
+            this.selector = Selector.open();
+        }
+
+        void addConnection(SocketChannel sc) {
+            acceptedConnections.add(sc);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                try {
+                    registerAcceptedConnections();
+                    selector.select(1000);
+                    Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                    while (selected.hasNext()) {
+                        SelectionKey k = selected.next();
+                        selected.remove();
+                        if (k.isValid() && (k.readyOps() & (SelectionKey.OP_READ | SelectionKey.OP_WRITE)) != 0) {
+                            NIOConnection c = (NIOConnection) k.attachment();
+                            c.doIO(k);
+                        }
+                    }
+                } catch (Exception e) {
+                    getLogger().error(e);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                getLogger().warn("ignoring exception during selector close", e);
+            }
+        }
+
+        private void registerAcceptedConnections() {
+            SocketChannel sc;
+            while ((sc = acceptedConnections.poll()) != null) {
+                try {
+                    register(sc, selector);
+                    connectionsRegistered.incrementAndGet();
+                } catch (IOException e) {
+                    getLogger().warn("Unable to register connection", e);
+                }
+            }
+        }
+
+        void shutdown() throws InterruptedException {
+            isRunning = false;
+            selector.wakeup();
+            join();
+        }
+    }
 }
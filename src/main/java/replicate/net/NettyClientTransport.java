@@ -0,0 +1,193 @@
+package replicate.net;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.ReferenceCountUtil;
+import replicate.common.Logging;
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Netty counterpart of NIOClientTransport.
+ * sendOneway connects to the peer if needed, and queues the message on the channel's event loop,
+ * which encodes it into a pooled buffer and writes it. The caller never waits for the connect or the write.
+ * Messages sent while connecting are written, in order, once the connection is made.
+ * Messages which are not written are reported to the sender's onFailure.
+ *
+ * Messages sent to peers are one way, so anything read on these channels is discarded.
+ */
+public class NettyClientTransport implements PeerTransport, Logging {
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+
+    private final EventLoopGroup eventLoopGroup;
+    private final Bootstrap bootstrap;
+    //connect futures, so sends to a peer being connected to do not wait for it.
+    private final Map<InetAddressAndPort, ChannelFuture> channels = new ConcurrentHashMap<>();
+    private final Map<InetAddressAndPort, ConnectFailures> connectFailures = new ConcurrentHashMap<>();
+    private final AtomicLong messagesDropped = new AtomicLong();
+
+    public NettyClientTransport() {
+        this(0);
+    }
+
+    public NettyClientTransport(int noOfThreads) {
+        this.eventLoopGroup = NettyEventLoops.newEventLoopGroup(noOfThreads, "NettyClientTransport");
+        this.bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NettyEventLoops.channelClass())
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MS)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(
+                                new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true),
+                                NettyFrameEncoder.INSTANCE,
+                                new DiscardingHandler());
+                    }
+                });
+    }
+
+    @Override
+    public void sendOneway(InetAddressAndPort address, RequestOrResponse message) throws IOException {
+        write(connectionTo(address), address, message, e -> {});
+    }
+
+    //Failures are reported to onFailure instead of thrown, as callers pass thrown exceptions to onFailure too.
+    @Override
+    public void sendOneway(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        ChannelFuture connection;
+        try {
+            connection = connectionTo(address);
+        } catch (IOException e) {
+            onFailure.accept(e);
+            return;
+        }
+        write(connection, address, message, onFailure);
+    }
+
+    //listeners of a connect future run in the order they were added, so messages keep their order.
+    private void write(ChannelFuture connection, InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) {
+        connection.addListener(connected -> {
+            if (!connected.isSuccess()) {
+                dropped(address, connected.cause(), onFailure);
+                return;
+            }
+            Channel channel = connection.channel();
+            channel.writeAndFlush(message).addListener(written -> {
+                if (!written.isSuccess()) {
+                    dropped(address, written.cause(), onFailure);
+                    channel.close();
+                }
+            });
+        });
+    }
+
+    private void dropped(InetAddressAndPort address, Throwable cause, Consumer<IOException> onFailure) {
+        messagesDropped.incrementAndGet();
+        getLogger().debug("Dropped message to " + address + ". " + cause.getMessage());
+        onFailure.accept(new IOException("Dropped message to " + address, cause));
+    }
+
+    private ChannelFuture connectionTo(InetAddressAndPort address) throws IOException {
+        ChannelFuture connection = channels.get(address);
+        if (connection != null && isUsable(connection)) {
+            return connection;
+        }
+        ConnectFailures failures = connectFailures.get(address);
+        if (failures != null && failures.isBackingOff()) {
+            throw new IOException("Unable to connect to " + address + ". Backing off after " + failures.count + " failures");
+        }
+        //compute locks only this peer's entry, and connect does not wait for the connection.
+        return channels.compute(address, (a, existing) -> existing != null && isUsable(existing) ? existing : connect(a));
+    }
+
+    //a connection is usable while it is being made, and once it is made until it is closed.
+    private static boolean isUsable(ChannelFuture connection) {
+        return !connection.isDone() || connection.channel().isActive();
+    }
+
+    private ChannelFuture connect(InetAddressAndPort address) {
+        ChannelFuture connectFuture = bootstrap.connect(new InetSocketAddress(address.getAddress(), address.getPort()));
+        connectFuture.addListener(connected -> {
+            if (connected.isSuccess()) {
+                connectFailures.remove(address);
+            } else {
+                connectFailures.computeIfAbsent(address, a -> new ConnectFailures()).failed();
+            }
+        });
+        //a failed connect closes the channel too.
+        connectFuture.channel().closeFuture().addListener(future -> channels.remove(address, connectFuture));
+        return connectFuture;
+    }
+
+    @Override
+    public void close(InetAddressAndPort address) {
+        ChannelFuture connection = channels.remove(address);
+        if (connection != null) {
+            connection.channel().close();
+        }
+    }
+
+    @Override
+    public void closeAll() {
+        channels.values().forEach(connection -> connection.channel().close());
+        channels.clear();
+        eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    public long getQueuedBytes(InetAddressAndPort address) {
+        ChannelFuture connection = channels.get(address);
+        return connection == null ? 0 : NettyConnection.queuedBytes(connection.channel());
+    }
+
+    public long getMessagesDropped() {
+        return messagesDropped.get();
+    }
+
+    //same backoff as NIOClientTransport.
+    static class ConnectFailures {
+        volatile int count;
+        volatile long nextAttemptNanos;
+
+        void failed() {
+            count++;
+            long delayMs = Math.min(NIOClientTransport.MAX_BACKOFF_MS, NIOClientTransport.INITIAL_BACKOFF_MS << Math.min(count - 1, 16));
+            nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        }
+
+        boolean isBackingOff() {
+            return System.nanoTime() < nextAttemptNanos;
+        }
+    }
+
+    //peers reply on their own connections. Reads only detect closed connections.
+    static class DiscardingHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package replicate.net;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import replicate.common.RequestOrResponse;
+
+//Client connection accepted by NettySocketListener.
+class NettyConnection implements ClientConnection {
+    private final Channel channel;
+
+    NettyConnection(Channel channel) {
+        this.channel = channel;
+    }
+
+    //responses written from any thread are queued on the channel's event loop.
+    //FlushConsolidationHandler in the pipeline coalesces the flushes.
+    @Override
+    public void write(RequestOrResponse response) {
+        channel.writeAndFlush(response);
+    }
+
+    @Override
+    public void close() {
+        channel.close();
+    }
+
+    //false once the queued bytes go above the channel's high water mark, till they are flushed below the low one.
+    @Override
+    public boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return queuedBytes(channel);
+    }
+
+    static long queuedBytes(Channel channel) {
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        return outboundBuffer == null ? 0 : outboundBuffer.totalPendingWriteBytes();
+    }
+}
@@ -0,0 +1,36 @@
+package replicate.net;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+//Native epoll transport on Linux, JDK NIO everywhere else.
+class NettyEventLoops {
+    static boolean isEpollAvailable() {
+        return Epoll.isAvailable();
+    }
+
+    //zero threads lets netty pick twice the number of cores.
+    static EventLoopGroup newEventLoopGroup(int noOfThreads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        return isEpollAvailable()
+                ? new EpollEventLoopGroup(noOfThreads, threadFactory)
+                : new NioEventLoopGroup(noOfThreads, threadFactory);
+    }
+
+    static Class<? extends ServerChannel> serverChannelClass() {
+        return isEpollAvailable() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    static Class<? extends SocketChannel> channelClass() {
+        return isEpollAvailable() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+}
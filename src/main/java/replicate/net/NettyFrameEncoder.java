@@ -0,0 +1,26 @@
+package replicate.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import replicate.common.RequestOrResponse;
+
+/**
+ * Writes the same size prefixed frames as NIOConnection and SocketClient,
+ * so Netty and NIO replicas and clients can talk to each other.
+ * Frames are encoded into buffers from the channel's pooled allocator.
+ */
+@ChannelHandler.Sharable
+class NettyFrameEncoder extends MessageToByteEncoder<RequestOrResponse> {
+    static final NettyFrameEncoder INSTANCE = new NettyFrameEncoder();
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, RequestOrResponse message, ByteBuf out) {
+        byte[] header = FrameCodec.encodeHeader(message);
+        byte[] body = FrameCodec.body(message);
+        out.writeInt(header.length + body.length);
+        out.writeBytes(header);
+        out.writeBytes(body);
+    }
+}
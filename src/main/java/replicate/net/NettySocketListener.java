@@ -0,0 +1,171 @@
+package replicate.net;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import replicate.common.Config;
+import replicate.common.Logging;
+import replicate.common.Message;
+import replicate.common.RequestId;
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Netty counterpart of NIOSocketListener. Uses the epoll transport when available,
+ * and pooled buffers for reading and writing frames.
+ * The wire format is the same size prefixed frame, so existing clients and peers work unchanged.
+ * Requests are handed to the consumer through an OrderedDispatcher, so a consumer blocking
+ * on a full update queue does not stall the event loop serving other connections.
+ */
+public class NettySocketListener implements RequestListener, Logging {
+    private final InetAddressAndPort listenAddress;
+    private final RequestConsumer requestConsumer;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final OrderedDispatcher dispatcher;
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final AtomicLong unwritableTransitions = new AtomicLong();
+    private final Channel serverChannel;
+
+    public NettySocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress) throws IOException {
+        this(requestConsumer, listenAddress, new Config(null));
+    }
+
+    public NettySocketListener(RequestConsumer requestConsumer, InetAddressAndPort listenAddress, Config config) throws IOException {
+        this.listenAddress = listenAddress;
+        this.requestConsumer = requestConsumer;
+        this.dispatcher = new OrderedDispatcher("NettyDispatcher-" + listenAddress, config.getDispatchThreads());
+        this.bossGroup = NettyEventLoops.newEventLoopGroup(1, "NettyAcceptor-" + listenAddress);
+        this.workerGroup = NettyEventLoops.newEventLoopGroup(config.getSelectorThreads(), "NettyWorker-" + listenAddress);
+        int maxFrameSize = config.getMaxFrameSize();
+        WriteBufferWaterMark waterMark = new WriteBufferWaterMark((int) config.getOutboundLowWatermarkBytes(), (int) config.getOutboundHighWatermarkBytes());
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NettyEventLoops.serverChannelClass())
+                //connections are accepted only after start, like the NIOSocketListener thread.
+                .option(ChannelOption.AUTO_READ, false)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        channels.add(ch);
+                        ch.pipeline().addLast(
+                                new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true),
+                                new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4),
+                                NettyFrameEncoder.INSTANCE,
+                                new RequestHandler(new NettyConnection(ch)));
+                    }
+                });
+        ChannelFuture bindFuture = bootstrap.bind(new InetSocketAddress(listenAddress.getAddress(), listenAddress.getPort())).awaitUninterruptibly();
+        if (!bindFuture.isSuccess()) {
+            shutdownEventLoops();
+            dispatcher.shutdown();
+            throw new IOException("Unable to listen on " + listenAddress, bindFuture.cause());
+        }
+        this.serverChannel = bindFuture.channel();
+    }
+
+    @Override
+    public void start() {
+        serverChannel.config().setAutoRead(true);
+    }
+
+    @Override
+    public void shudown() {
+        serverChannel.close().awaitUninterruptibly();
+        channels.close().awaitUninterruptibly();
+        shutdownEventLoops();
+        dispatcher.shutdown();
+    }
+
+    private void shutdownEventLoops() {
+        bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+        workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    public InetAddressAndPort getListenAddress() {
+        return listenAddress;
+    }
+
+    public OrderedDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    //number of times a connection went above the high watermark.
+    public long getUnwritableTransitions() {
+        return unwritableTransitions.get();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return channels.stream().mapToLong(NettyConnection::queuedBytes).sum();
+    }
+
+    public long getUnwritableConnections() {
+        return channels.stream().filter(c -> !c.isWritable()).count();
+    }
+
+    //One per connection. Frames arrive without the size prefix, which the frame decoder strips.
+    class RequestHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        private final NettyConnection connection;
+        //requests from this connection are handed to the consumer in the order they are read.
+        private final Executor executor = dispatcher.newSerialExecutor();
+
+        RequestHandler(NettyConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+            //the body is copied out, so the pooled frame is released when this returns.
+            RequestOrResponse request = FrameCodec.decode(frame.nioBuffer());
+            RequestId requestId = RequestId.valueOf(request.getRequestId());
+            var header = new Message.Header(request.getFromAddress(), request.getCorrelationId(), requestId);
+            executor.execute(() -> requestConsumer.accept(new Message<RequestOrResponse>(request, header, connection)));
+        }
+
+        //stop reading new requests till the client catches up. TCP pushes back on the client.
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            Channel channel = ctx.channel();
+            if (!channel.isWritable()) {
+                unwritableTransitions.incrementAndGet();
+            }
+            channel.config().setAutoRead(channel.isWritable());
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            requestConsumer.close(connection);
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            getLogger().debug("Closing connection from " + ctx.channel().remoteAddress() + ". " + cause.getMessage());
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package replicate.net;
+
+import replicate.common.Logging;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed pool of threads shared by all the connections of a listener.
+ * Each connection dispatches through its own SerialExecutor, which runs
+ * the connection's requests one after the other, in the order they were read.
+ * Different connections are dispatched in parallel.
+ */
+public class OrderedDispatcher implements Logging {
+    //Max requests of one connection handled in a single activation,
+    //so that a busy connection does not starve others.
+    private static final int MAX_TASKS_PER_ACTIVATION = 64;
+
+    private final ExecutorService pool;
+    private final int noOfThreads;
+
+    private final LongAdder dispatchedRequests = new LongAdder();
+    private final LongAdder totalDispatchLatencyNanos = new LongAdder();
+    private final AtomicLong maxDispatchLatencyNanos = new AtomicLong();
+
+    public OrderedDispatcher(String name, int noOfThreads) {
+        this.noOfThreads = noOfThreads;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(noOfThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SerialExecutor newSerialExecutor() {
+        return new SerialExecutor();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public int getThreadCount() {
+        return noOfThreads;
+    }
+
+    public long getDispatchedRequests() {
+        return dispatchedRequests.sum();
+    }
+
+    //time requests waited between being read from the connection and being handed to the consumer.
+    public long getAverageDispatchLatencyNanos() {
+        long count = dispatchedRequests.sum();
+        return count == 0 ? 0 : totalDispatchLatencyNanos.sum() / count;
+    }
+
+    public long getMaxDispatchLatencyNanos() {
+        return maxDispatchLatencyNanos.get();
+    }
+
+    private void recordDispatchLatency(long latencyNanos) {
+        dispatchedRequests.increment();
+        totalDispatchLatencyNanos.add(latencyNanos);
+        maxDispatchLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    public class SerialExecutor implements Executor {
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(new Task(command, System.nanoTime()));
+            registerForExecution();
+        }
+
+        private void registerForExecution() {
+            if (!tasks.isEmpty() && isScheduled.compareAndSet(false, true)) {
+                try {
+                    pool.execute(this::runTasks);
+                } catch (RejectedExecutionException e) {
+                    //dispatcher is shut down.
+                    isScheduled.set(false);
+                }
+            }
+        }
+
+        private void runTasks() {
+            try {
+                Task task;
+                int noOfTasks = 0;
+                while (noOfTasks++ < MAX_TASKS_PER_ACTIVATION && (task = tasks.poll()) != null) {
+                    recordDispatchLatency(System.nanoTime() - task.submitTimeNanos());
+                    try {
+                        task.command().run();
+                    } catch (Exception e) {
+                        getLogger().error("Unexpected exception dispatching request", e);
+                    }
+                }
+            } finally {
+                isScheduled.set(false);
+                registerForExecution();
+            }
+        }
+    }
+
+    private record Task(Runnable command, long submitTimeNanos) {}
+}
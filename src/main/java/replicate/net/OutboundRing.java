@@ -0,0 +1,142 @@
+package replicate.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Outgoing bytes of a connection, kept in a ring of pooled buffers.
+ * Frames are encoded directly into the last buffer of the ring, spilling over to
+ * a new pooled buffer when it is full. All the queued buffers are written with a single
+ * gathering write, and the fully written buffers are returned to the pool.
+ * Buffers in the ring are always kept flipped, ready to be written to the socket.
+ */
+class OutboundRing {
+    private final BufferPool bufferPool;
+    private ByteBuffer[] buffers = new ByteBuffer[16];
+    private int head = 0;
+    private int size = 0;
+    private long queuedBytes = 0;
+
+    OutboundRing(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    //Appends a size prefixed frame made of the given parts.
+    //Returns true if the ring was empty before this frame.
+    synchronized boolean appendFrame(byte[]... parts) {
+        boolean wasEmpty = queuedBytes == 0;
+        int frameLength = 0;
+        for (byte[] part : parts) {
+            frameLength += part.length;
+        }
+        putInt(frameLength);
+        for (byte[] part : parts) {
+            put(part, 0, part.length);
+        }
+        queuedBytes += 4 + frameLength;
+        return wasEmpty;
+    }
+
+    //Returns true if everything queued is written.
+    synchronized boolean writeTo(GatheringByteChannel channel) throws IOException {
+        if (size == 0) {
+            return true;
+        }
+        long written;
+        if (head + size <= buffers.length) {
+            written = channel.write(buffers, head, size);
+        } else {
+            written = channel.write(orderedBuffers());
+        }
+        queuedBytes -= written;
+        releaseWrittenBuffers();
+        return queuedBytes == 0;
+    }
+
+    synchronized long queuedBytes() {
+        return queuedBytes;
+    }
+
+    synchronized void release() {
+        while (size > 0) {
+            bufferPool.release(removeHead());
+        }
+        queuedBytes = 0;
+    }
+
+    private void releaseWrittenBuffers() {
+        //The last buffer is kept while it has space, so more frames can be appended to it.
+        while (size > 0 && !buffers[head].hasRemaining()
+                && (size > 1 || buffers[head].limit() == buffers[head].capacity())) {
+            bufferPool.release(removeHead());
+        }
+    }
+
+    private ByteBuffer removeHead() {
+        ByteBuffer buffer = buffers[head];
+        buffers[head] = null;
+        head = (head + 1) % buffers.length;
+        size--;
+        return buffer;
+    }
+
+    private ByteBuffer[] orderedBuffers() {
+        ByteBuffer[] ordered = new ByteBuffer[size];
+        for (int i = 0; i < size; i++) {
+            ordered[i] = buffers[(head + i) % buffers.length];
+        }
+        return ordered;
+    }
+
+    private void putInt(int value) {
+        byte[] sizeBytes = new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        put(sizeBytes, 0, 4);
+    }
+
+    private void put(byte[] src, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer tail = writableTail();
+            //switch the flipped tail to append mode.
+            int readPosition = tail.position();
+            tail.position(tail.limit());
+            tail.limit(tail.capacity());
+            int n = Math.min(length, tail.remaining());
+            tail.put(src, offset, n);
+            tail.limit(tail.position());
+            tail.position(readPosition);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private ByteBuffer writableTail() {
+        if (size > 0) {
+            ByteBuffer tail = buffers[(head + size - 1) % buffers.length];
+            if (tail.limit() < tail.capacity()) {
+                return tail;
+            }
+        }
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.flip(); //empty and ready to be written.
+        addTail(buffer);
+        return buffer;
+    }
+
+    private void addTail(ByteBuffer buffer) {
+        if (size == buffers.length) {
+            buffers = orderedBuffersWithCapacity(buffers.length * 2);
+            head = 0;
+        }
+        buffers[(head + size) % buffers.length] = buffer;
+        size++;
+    }
+
+    private ByteBuffer[] orderedBuffersWithCapacity(int capacity) {
+        ByteBuffer[] resized = new ByteBuffer[capacity];
+        for (int i = 0; i < size; i++) {
+            resized[i] = buffers[(head + i) % buffers.length];
+        }
+        return resized;
+    }
+}
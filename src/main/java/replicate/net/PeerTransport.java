@@ -0,0 +1,28 @@
+package replicate.net;
+
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries one-way messages from a Replica to its peers.
+ * Implementations decide how connections to peers are managed,
+ * e.g. blocking sockets written from the caller thread,
+ * or non-blocking channels flushed by a separate I/O thread.
+ * @see SocketClientTransport
+ * @see NIOClientTransport
+ */
+public interface PeerTransport {
+    void sendOneway(InetAddressAndPort address, RequestOrResponse message) throws IOException;
+
+    //Transports queuing the message call onFailure if it is dropped after sendOneway returns.
+    default void sendOneway(InetAddressAndPort address, RequestOrResponse message, Consumer<IOException> onFailure) throws IOException {
+        sendOneway(address, message);
+    }
+
+    //drops the connection to the peer. Next send reconnects.
+    void close(InetAddressAndPort address);
+
+    void closeAll();
+}
@@ -0,0 +1,15 @@
+package replicate.net;
+
+/**
+ * Accepts connections on a listen address and hands the requests read from them to a RequestConsumer.
+ * @see NIOSocketListener
+ * @see NettySocketListener
+ */
+public interface RequestListener {
+    void start();
+
+    void shudown();
+
+    //bytes of responses waiting to be sent on all the accepted connections.
+    long getQueuedBytes();
+}
@@ -2,39 +2,66 @@ package replicate.net;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import replicate.common.JsonSerDes;
 import replicate.common.RequestOrResponse;
 
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 public class SocketClient<T> implements Closeable {
     private static Logger logger = LogManager.getLogger(SocketClient.class.getName());
 
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 5000;
+    //connections used more recently than this are reused without probing them.
+    public static final long PROBE_AFTER_IDLE_MS = 50;
+
+    //the socket of a channel, so the connection can be probed without blocking.
+    //A channel is closed if the thread using it is interrupted, which a plain socket ignores,
+    //so the I/O is done with the thread's interrupt cleared. See ignoringInterrupt.
+    private final SocketChannel channel;
+    private final ByteBuffer probeBuffer = ByteBuffer.allocate(1);
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile boolean ioFailed;
     Socket clientSocket;
 
     public SocketClient(InetAddressAndPort address) throws IOException {
-        this.clientSocket = new Socket(address.getAddress(), address.getPort());
-        clientSocket.setSoTimeout(5000);
+        this.channel = SocketChannel.open();
+        this.clientSocket = channel.socket();
+        //without a connect timeout, an unreachable peer blocks the caller for the OS default (minutes).
+        ignoringInterrupt(() -> {
+            clientSocket.connect(new InetSocketAddress(address.getAddress(), address.getPort()), CONNECT_TIMEOUT_MS);
+            return null;
+        });
+        clientSocket.setSoTimeout(READ_TIMEOUT_MS);
+        clientSocket.setTcpNoDelay(true);
     }
 
-    public void sendOneway(T message) {
-        sendOneway(clientSocket, JsonSerDes.serialize(message));
+    public void sendOneway(RequestOrResponse message) {
+        sendOneway(clientSocket, message);
     }
 
-    public void sendOneway(Socket socket, byte[] serializedMessage) {
+    //Connections are pooled and shared by multiple threads,
+    //so a frame needs to be written atomically.
+    public synchronized void sendOneway(Socket socket, RequestOrResponse message) {
         try {
-            var outputStream = socket.getOutputStream();
-            var dataStream = new DataOutputStream(outputStream);
-            var messageBytes = serializedMessage;
-            dataStream.writeInt(messageBytes.length);
-            dataStream.write(messageBytes);
-            dataStream.flush();
+            ignoringInterrupt(() -> {
+                var outputStream = socket.getOutputStream();
+                var dataStream = new DataOutputStream(outputStream);
+                FrameCodec.writeFrame(dataStream, message);
+                dataStream.flush();
+                return null;
+            });
+            lastUsedNanos = System.nanoTime();
         } catch (IOException e) {
-            new RuntimeException(e);
+            ioFailed = true;
+            throw new NetworkException(e);
         }
     }
 
@@ -44,21 +71,25 @@ public class SocketClient<T> implements Closeable {
 
     byte[] read(Socket socket) {
         try {
-            var inputStream = socket.getInputStream();
-            var dataInputStream = new DataInputStream(inputStream);
-            var size = dataInputStream.readInt();
-            var responseBytes = new byte[size];
-            dataInputStream.read(responseBytes);
-            return responseBytes;
-            
+            return ignoringInterrupt(() -> {
+                var inputStream = socket.getInputStream();
+                var dataInputStream = new DataInputStream(inputStream);
+                var size = dataInputStream.readInt();
+                var responseBytes = new byte[size];
+                dataInputStream.readFully(responseBytes);
+                lastUsedNanos = System.nanoTime();
+                return responseBytes;
+            });
+
         } catch (IOException e) {
+            ioFailed = true;
             throw new RuntimeException(e);
         }
     }
 
-    public RequestOrResponse blockingSend(T requestOrResponse) {
-        sendOneway(clientSocket, JsonSerDes.serialize(requestOrResponse));
-        return JsonSerDes.deserialize(read(clientSocket), RequestOrResponse.class);
+    public synchronized RequestOrResponse blockingSend(RequestOrResponse requestOrResponse) {
+        sendOneway(clientSocket, requestOrResponse);
+        return FrameCodec.decode(read(clientSocket));
     }
 
     public void close() {
@@ -72,4 +103,59 @@ public class SocketClient<T> implements Closeable {
     public boolean isClosed() {
         return clientSocket.isClosed();
     }
+
+    //isClosed only tells if this side closed the socket.
+    //A pooled connection is reusable only if it is still connected both ways.
+    //A connection the peer closed would accept the next write and lose it,
+    //so the connection is read without blocking to see if the peer closed it.
+    //The read is done only for connections idle for PROBE_AFTER_IDLE_MS, or after an I/O error.
+    //A busy connection closed by the peer fails its next writes, and is evicted then.
+    public boolean isHealthy() {
+        return clientSocket.isConnected()
+                && !clientSocket.isClosed()
+                && !clientSocket.isInputShutdown()
+                && !clientSocket.isOutputShutdown()
+                && !(needsProbe() && isClosedByPeer());
+    }
+
+    private boolean needsProbe() {
+        return ioFailed || System.nanoTime() - lastUsedNanos > TimeUnit.MILLISECONDS.toNanos(PROBE_AFTER_IDLE_MS);
+    }
+
+    //Nothing should be waiting to be read between requests. Bytes found are from a response
+    //which was not waited for, so the connection is not reused either.
+    //synchronized, as a blocking send can not run while the channel is non-blocking.
+    private synchronized boolean isClosedByPeer() {
+        try {
+            return ignoringInterrupt(() -> {
+                channel.configureBlocking(false);
+                try {
+                    probeBuffer.clear();
+                    return channel.read(probeBuffer) != 0;
+                } finally {
+                    channel.configureBlocking(true);
+                }
+            });
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private interface SocketIO<T> {
+        T run() throws IOException;
+    }
+
+    //Tasks cancelled with an interrupt still send messages, e.g. a heartbeat checker which
+    //stops itself and then starts an election. The interrupt is set again once the I/O is done.
+    //An interrupt arriving while the thread is blocked on the channel still closes it.
+    private static <T> T ignoringInterrupt(SocketIO<T> io) throws IOException {
+        boolean interrupted = Thread.interrupted();
+        try {
+            return io.run();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package replicate.net;
+
+import replicate.common.RequestOrResponse;
+
+import java.io.IOException;
+
+public class SocketClientTransport implements PeerTransport {
+    private final ConnectionPool connectionPool;
+
+    public SocketClientTransport(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    @Override
+    public void sendOneway(InetAddressAndPort address, RequestOrResponse message) throws IOException {
+        SocketClient socketClient = connectionPool.getOrCreate(address);
+        try {
+            socketClient.sendOneway(message);
+        } catch (NetworkException e) {
+            //peer closed the connection or went away. Next send will reconnect.
+            connectionPool.evict(address);
+            throw new IOException("Unable to send message to " + address, e);
+        }
+    }
+
+    @Override
+    public void close(InetAddressAndPort address) {
+        connectionPool.evict(address);
+    }
+
+    @Override
+    public void closeAll() {
+        connectionPool.closeAll();
+    }
+}
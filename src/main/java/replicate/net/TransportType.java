@@ -0,0 +1,12 @@
+package replicate.net;
+
+public enum TransportType {
+    //SocketClient writes on the caller thread.
+    BLOCKING,
+    //Selector based writes on a dedicated I/O thread.
+    NIO,
+    //Netty event loops, epoll when available, for both peer messages and the listeners.
+    NETTY,
+    //direct delivery to replicas in the same JVM. Client requests still come over sockets.
+    IN_PROCESS
+}
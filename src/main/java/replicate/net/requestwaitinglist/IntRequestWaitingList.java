@@ -0,0 +1,328 @@
+package replicate.net.requestwaitinglist;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import replicate.common.SystemClock;
+import replicate.net.InetAddressAndPort;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * RequestWaitingList specialized for int correlation ids, used by Replica for every request sent to peers.
+ *
+ * Callbacks are kept in an open addressing table keyed by the primitive correlation id,
+ * so adding and removing a request does not box the key or allocate a map node.
+ * Each request carries its own timeout. Requests are expired with a hashed timing wheel:
+ * every tick looks only at the requests whose deadline falls in that tick's bucket,
+ * instead of scanning all the pending requests.
+ *
+ *  ticks ->  0   1   2   3  ...  wheelSize-1
+ *           [ ] [x] [ ] [x]      [ ]
+ *                |       |
+ *              req 7   req 3 -> req 12 (a later round, kept till its deadline)
+ */
+public class IntRequestWaitingList<Response> {
+    private static Logger logger = LogManager.getLogger(IntRequestWaitingList.class);
+
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SystemClock clock;
+    private final Duration defaultTimeout;
+    private final long tickNanos;
+    private final long startNanos;
+    private final PendingRequest[] wheel;
+    private final int wheelMask;
+    private long currentTick;
+
+    //open addressing with linear probing. A null entry marks a free slot.
+    private int[] keys;
+    private PendingRequest[] entries;
+    private int tableMask;
+    private int size;
+
+    private long requestsExpired;
+    private long requestsReplaced;
+    private final ScheduledExecutorService executor;
+
+    public IntRequestWaitingList(SystemClock clock, Duration defaultTimeout) {
+        this(clock, defaultTimeout, DEFAULT_TICK, DEFAULT_WHEEL_SIZE, true);
+    }
+
+    //with startTicking false, requests are expired only when expire() is called. Used by tests driving the clock.
+    IntRequestWaitingList(SystemClock clock, Duration defaultTimeout, Duration tick, int wheelSize, boolean startTicking) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two. Was " + wheelSize);
+        }
+        this.clock = clock;
+        this.defaultTimeout = defaultTimeout;
+        this.tickNanos = tick.toNanos();
+        this.startNanos = clock.nanoTime();
+        this.wheel = new PendingRequest[wheelSize];
+        this.wheelMask = wheelSize - 1;
+        this.keys = new int[INITIAL_CAPACITY];
+        this.entries = new PendingRequest[INITIAL_CAPACITY];
+        this.tableMask = INITIAL_CAPACITY - 1;
+        this.executor = startTicking ? startTicking(tick) : null;
+    }
+
+    private ScheduledExecutorService startTicking(Duration tick) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RequestWaitingListTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::expire, tick.toNanos(), tick.toNanos(), TimeUnit.NANOSECONDS);
+        return executor;
+    }
+
+    public void add(int key, RequestCallback<Response> callback) {
+        add(key, callback, defaultTimeout);
+    }
+
+    public void add(int key, RequestCallback<Response> callback, Duration timeout) {
+        long now = clock.nanoTime();
+        logger.debug("RequestWaitingList adding " + key + " at " + now);
+        PendingRequest request = new PendingRequest(key, callback, now + timeout.toNanos());
+        PendingRequest replaced;
+        synchronized (this) {
+            replaced = put(request);
+            schedule(request);
+            if (replaced != null) {
+                requestsReplaced++;
+            }
+        }
+        if (replaced != null) {
+            //correlation ids are unique while a request is pending, so this is a bug in the sender.
+            logger.warn("Request " + key + " replaced a pending request with the same correlation id");
+        }
+    }
+
+    public synchronized boolean isPending(int key) {
+        int slot = slot(key);
+        while (entries[slot] != null) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return false;
+    }
+
+    public void handleResponse(int key, Response response) {
+        handleResponse(key, response, null);
+    }
+
+    public void handleResponse(int key, Response response, InetAddressAndPort fromNode) {
+        logger.debug("RequestWaitingList received response for " + key + " at " + clock.nanoTime());
+        PendingRequest request = remove(key);
+        if (request == null) {
+            return; //already expired or handled.
+        }
+        request.callback.onResponse(response, fromNode);
+    }
+
+    public void handleError(int key, Exception e) {
+        PendingRequest request = remove(key);
+        if (request == null) {
+            return; //already expired or handled.
+        }
+        request.callback.onError(e);
+    }
+
+    //Runs the ticks due since the last call. Callbacks are invoked after the lock is released.
+    void expire() {
+        long now = clock.nanoTime();
+        List<PendingRequest> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (now - startNanos) / tickNanos;
+            //after a full turn every bucket has been looked at, so the remaining ticks can be skipped.
+            long firstTick = Math.max(currentTick, targetTick - wheelMask);
+            for (long tick = firstTick; tick <= targetTick; tick++) {
+                expireBucket((int) (tick & wheelMask), now, expired);
+            }
+            currentTick = targetTick + 1;
+            requestsExpired += expired.size();
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        logger.info("Expiring " + expired.stream().map(r -> r.key).toList());
+        for (PendingRequest request : expired) {
+            try {
+                request.callback.onError(new TimeoutException("Request expired"));
+            } catch (Exception e) {
+                logger.error("Callback for expired request " + request.key + " failed", e);
+            }
+        }
+    }
+
+    private void expireBucket(int bucket, long now, List<PendingRequest> expired) {
+        PendingRequest request = wheel[bucket];
+        while (request != null) {
+            PendingRequest next = request.next;
+            //requests due in a later turn of the wheel share the bucket, and stay.
+            if (request.deadlineNanos <= now) {
+                unschedule(request);
+                removeFromTable(request.key);
+                expired.add(request);
+            }
+            request = next;
+        }
+    }
+
+    private void schedule(PendingRequest request) {
+        long tick = Math.max(currentTick, (request.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+        int bucket = (int) (tick & wheelMask);
+        request.bucket = bucket;
+        request.next = wheel[bucket];
+        if (request.next != null) {
+            request.next.prev = request;
+        }
+        wheel[bucket] = request;
+    }
+
+    private void unschedule(PendingRequest request) {
+        if (request.prev != null) {
+            request.prev.next = request.next;
+        } else {
+            wheel[request.bucket] = request.next;
+        }
+        if (request.next != null) {
+            request.next.prev = request.prev;
+        }
+        request.prev = null;
+        request.next = null;
+    }
+
+    private synchronized PendingRequest remove(int key) {
+        PendingRequest request = removeFromTable(key);
+        if (request != null) {
+            unschedule(request);
+        }
+        return request;
+    }
+
+    private PendingRequest put(PendingRequest request) {
+        int slot = slot(request.key);
+        while (entries[slot] != null) {
+            if (keys[slot] == request.key) {
+                PendingRequest replaced = entries[slot];
+                unschedule(replaced);
+                entries[slot] = request;
+                return replaced;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        keys[slot] = request.key;
+        entries[slot] = request;
+        if (++size > (tableMask + 1) / 2) {
+            resize();
+        }
+        return null;
+    }
+
+    private PendingRequest removeFromTable(int key) {
+        int slot = slot(key);
+        while (entries[slot] != null) {
+            if (keys[slot] == key) {
+                PendingRequest removed = entries[slot];
+                shiftBack(slot);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return null;
+    }
+
+    //Moves back the entries following a freed slot, so lookups never stop early at the hole.
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & tableMask;
+            if (entries[slot] == null) {
+                break;
+            }
+            int home = slot(keys[slot]);
+            //the entry can move to the free slot only if its home is not between the free slot and itself.
+            boolean canMove = free <= slot ? (home <= free || home > slot) : (home <= free && home > slot);
+            if (canMove) {
+                keys[free] = keys[slot];
+                entries[free] = entries[slot];
+                free = slot;
+            }
+        }
+        entries[free] = null;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        PendingRequest[] oldEntries = entries;
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        entries = new PendingRequest[capacity];
+        tableMask = capacity - 1;
+        for (int i = 0; i < oldEntries.length; i++) {
+            if (oldEntries[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (entries[slot] != null) {
+                    slot = (slot + 1) & tableMask;
+                }
+                keys[slot] = oldKeys[i];
+                entries[slot] = oldEntries[i];
+            }
+        }
+    }
+
+    //correlation ids are often sequential. Mixing spreads them over the table.
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & tableMask;
+    }
+
+    public synchronized int getPendingRequests() {
+        return size;
+    }
+
+    public synchronized long getRequestsExpired() {
+        return requestsExpired;
+    }
+
+    //requests added with the correlation id of a request still pending. Should stay 0.
+    public synchronized long getRequestsReplaced() {
+        return requestsReplaced;
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class PendingRequest {
+        final int key;
+        final RequestCallback callback;
+        final long deadlineNanos;
+        int bucket;
+        PendingRequest prev;
+        PendingRequest next;
+
+        PendingRequest(int key, RequestCallback callback, long deadlineNanos) {
+            this.key = key;
+            this.callback = callback;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
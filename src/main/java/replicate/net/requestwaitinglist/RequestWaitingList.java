@@ -131,6 +131,9 @@ public class RequestWaitingList<Key, Response> {
 
     public void handleError(int requestId, Exception e) {
         CallbackDetails callbackDetails = pendingRequests.remove(requestId);
+        if (callbackDetails == null) {
+            return; //already expired or handled.
+        }
         callbackDetails.getRequestCallback().onError(e);
     }
 
@@ -1,10 +1,31 @@
 package replicate.paxos.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosCommitRequest;
 
 public class CommitRequest extends Request {
+    public static final MessageCodec<CommitRequest> CODEC = MessageCodec.of(CommitRequest.class,
+            (request, os) -> {
+                MessageCodec.writeMonotonicId(os, request.generation);
+                MessageCodec.writeBytes(os, request.value);
+            },
+            is -> new CommitRequest(MessageCodec.readMonotonicId(is), MessageCodec.readBytes(is)));
+
+    public static final MessageCodec<CommitRequest> PROTOBUF_CODEC = MessageCodec.protobuf(CommitRequest.class,
+            request -> {
+                var proto = PaxosCommitRequest.newBuilder();
+                if (request.generation != null) proto.setGeneration(Protobufs.toProto(request.generation));
+                if (request.value != null) proto.setValue(Protobufs.toProto(request.value));
+                return proto.build();
+            },
+            PaxosCommitRequest.parser(),
+            proto -> new CommitRequest(proto.hasGeneration() ? Protobufs.fromProto(proto.getGeneration()) : null,
+                    proto.hasValue() ? proto.getValue().toByteArray() : null));
+
     private MonotonicId generation;
     private byte[] value;
     public CommitRequest(MonotonicId generation, byte[] value) {
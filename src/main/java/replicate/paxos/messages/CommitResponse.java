@@ -1,9 +1,20 @@
 package replicate.paxos.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosCommitResponse;
 
 public class CommitResponse extends Request {
+    public static final MessageCodec<CommitResponse> CODEC = MessageCodec.of(CommitResponse.class,
+            (response, os) -> os.writeBoolean(response.success),
+            is -> new CommitResponse(is.readBoolean()));
+
+    public static final MessageCodec<CommitResponse> PROTOBUF_CODEC = MessageCodec.protobuf(CommitResponse.class,
+            response -> PaxosCommitResponse.newBuilder().setSuccess(response.success).build(),
+            PaxosCommitResponse.parser(),
+            proto -> new CommitResponse(proto.getSuccess()));
+
     public final boolean success;
 
     public CommitResponse(boolean success) {
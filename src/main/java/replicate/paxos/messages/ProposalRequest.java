@@ -1,10 +1,31 @@
 package replicate.paxos.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosProposalRequest;
 
 public class ProposalRequest extends Request {
+    public static final MessageCodec<ProposalRequest> CODEC = MessageCodec.of(ProposalRequest.class,
+            (request, os) -> {
+                MessageCodec.writeMonotonicId(os, request.monotonicId);
+                MessageCodec.writeBytes(os, request.proposedValue);
+            },
+            is -> new ProposalRequest(MessageCodec.readMonotonicId(is), MessageCodec.readBytes(is)));
+
+    public static final MessageCodec<ProposalRequest> PROTOBUF_CODEC = MessageCodec.protobuf(ProposalRequest.class,
+            request -> {
+                var proto = PaxosProposalRequest.newBuilder();
+                if (request.monotonicId != null) proto.setMonotonicId(Protobufs.toProto(request.monotonicId));
+                if (request.proposedValue != null) proto.setProposedValue(Protobufs.toProto(request.proposedValue));
+                return proto.build();
+            },
+            PaxosProposalRequest.parser(),
+            proto -> new ProposalRequest(proto.hasMonotonicId() ? Protobufs.fromProto(proto.getMonotonicId()) : null,
+                    proto.hasProposedValue() ? proto.getProposedValue().toByteArray() : null));
+
     private MonotonicId monotonicId;
     private byte[] proposedValue;
 
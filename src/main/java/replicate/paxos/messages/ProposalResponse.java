@@ -1,9 +1,20 @@
 package replicate.paxos.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosProposalResponse;
 
 public class ProposalResponse extends Request {
+    public static final MessageCodec<ProposalResponse> CODEC = MessageCodec.of(ProposalResponse.class,
+            (response, os) -> os.writeBoolean(response.success),
+            is -> new ProposalResponse(is.readBoolean()));
+
+    public static final MessageCodec<ProposalResponse> PROTOBUF_CODEC = MessageCodec.protobuf(ProposalResponse.class,
+            response -> PaxosProposalResponse.newBuilder().setSuccess(response.success).build(),
+            PaxosProposalResponse.parser(),
+            proto -> new ProposalResponse(proto.getSuccess()));
+
     public final boolean success;
 
     public ProposalResponse(boolean success) {
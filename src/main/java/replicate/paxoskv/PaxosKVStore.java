@@ -23,14 +23,15 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 public class PaxosKVStore extends Replica {
     private static Logger logger = LogManager.getLogger(PaxosKVStore.class);
 
-    //Paxos State per key
-    Map<String, PaxosState> kv = new HashMap<>();
+    //Paxos State per key. Concurrent, as the paxos messages for different keys can be handled on different lanes.
+    Map<String, PaxosState> kv = new ConcurrentHashMap<>();
 
     public PaxosKVStore(String name, SystemClock clock, Config config, InetAddressAndPort clientAddress, InetAddressAndPort peerConnectionAddress, List<InetAddressAndPort> peers) throws IOException {
         super(name, config, clock, clientAddress, peerConnectionAddress, peers);
@@ -40,6 +41,12 @@ public class PaxosKVStore extends Replica {
 
     @Override
     protected void registerHandlers() {
+        //binary codecs for the messages sent for every client request.
+        registerCodec(RequestId.ProposeRequest, ProposalRequest.CODEC, ProposalRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.Commit, CommitRequest.CODEC, CommitRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.ProposeResponse, ProposalResponse.CODEC, ProposalResponse.PROTOBUF_CODEC);
+        registerCodec(RequestId.CommitResponse, CommitResponse.CODEC, CommitResponse.PROTOBUF_CODEC);
+
         //client rpc
         handlesRequestAsync(RequestId.SetValueRequest, this::handleClientSetValueRequest, SetValueRequest.class);
         handlesRequestAsync(RequestId.GetValueRequest, this::handleClientGetValueRequest, GetValueRequest.class);
@@ -53,6 +60,11 @@ public class PaxosKVStore extends Replica {
 
         handlesMessage(RequestId.Commit, this::handlePaxosCommit, CommitRequest.class)
                 .respondsWithMessage(RequestId.CommitResponse, CommitResponse.class);
+
+        //each key has its own paxos state, so the messages for different keys can be handled in parallel.
+        partitionsByKey(RequestId.Prepare, PrepareRequest.class, r -> r.key);
+        partitionsByKey(RequestId.ProposeRequest, ProposalRequest.class, r -> r.key);
+        partitionsByKey(RequestId.Commit, CommitRequest.class, r -> r.key);
     }
 
     private CompletableFuture<GetValueResponse> handleClientGetValueRequest(GetValueRequest request) {
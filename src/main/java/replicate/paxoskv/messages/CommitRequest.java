@@ -1,10 +1,34 @@
 package replicate.paxoskv.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosKVCommitRequest;
 
 public class CommitRequest extends Request {
+    public static final MessageCodec<CommitRequest> CODEC = MessageCodec.of(CommitRequest.class,
+            (request, os) -> {
+                MessageCodec.writeString(os, request.key);
+                MessageCodec.writeBytes(os, request.value);
+                MessageCodec.writeMonotonicId(os, request.generation);
+            },
+            is -> new CommitRequest(MessageCodec.readString(is), MessageCodec.readBytes(is), MessageCodec.readMonotonicId(is)));
+
+    public static final MessageCodec<CommitRequest> PROTOBUF_CODEC = MessageCodec.protobuf(CommitRequest.class,
+            request -> {
+                var proto = PaxosKVCommitRequest.newBuilder();
+                if (request.key != null) proto.setKey(request.key);
+                if (request.value != null) proto.setValue(Protobufs.toProto(request.value));
+                if (request.generation != null) proto.setGeneration(Protobufs.toProto(request.generation));
+                return proto.build();
+            },
+            PaxosKVCommitRequest.parser(),
+            proto -> new CommitRequest(proto.hasKey() ? proto.getKey() : null,
+                    proto.hasValue() ? proto.getValue().toByteArray() : null,
+                    proto.hasGeneration() ? Protobufs.fromProto(proto.getGeneration()) : null));
+
     public final String key;
     public final byte[] value;
     public final MonotonicId generation;
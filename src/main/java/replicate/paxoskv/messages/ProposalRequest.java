@@ -1,10 +1,34 @@
 package replicate.paxoskv.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosKVProposalRequest;
 
 public class ProposalRequest extends Request {
+    public static final MessageCodec<ProposalRequest> CODEC = MessageCodec.of(ProposalRequest.class,
+            (request, os) -> {
+                MessageCodec.writeMonotonicId(os, request.generation);
+                MessageCodec.writeString(os, request.key);
+                MessageCodec.writeBytes(os, request.proposedValue);
+            },
+            is -> new ProposalRequest(MessageCodec.readMonotonicId(is), MessageCodec.readString(is), MessageCodec.readBytes(is)));
+
+    public static final MessageCodec<ProposalRequest> PROTOBUF_CODEC = MessageCodec.protobuf(ProposalRequest.class,
+            request -> {
+                var proto = PaxosKVProposalRequest.newBuilder();
+                if (request.generation != null) proto.setGeneration(Protobufs.toProto(request.generation));
+                if (request.key != null) proto.setKey(request.key);
+                if (request.proposedValue != null) proto.setProposedValue(Protobufs.toProto(request.proposedValue));
+                return proto.build();
+            },
+            PaxosKVProposalRequest.parser(),
+            proto -> new ProposalRequest(proto.hasGeneration() ? Protobufs.fromProto(proto.getGeneration()) : null,
+                    proto.hasKey() ? proto.getKey() : null,
+                    proto.hasProposedValue() ? proto.getProposedValue().toByteArray() : null));
+
     public final MonotonicId generation;
     public final String key;
     public final byte[] proposedValue;
@@ -1,10 +1,33 @@
 package replicate.paxoslog.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosLogCommitRequest;
 
 public class CommitRequest extends Request {
+    public static final MessageCodec<CommitRequest> CODEC = MessageCodec.of(CommitRequest.class,
+            (request, os) -> {
+                os.writeInt(request.index);
+                MessageCodec.writeBytes(os, request.committedValue);
+                MessageCodec.writeMonotonicId(os, request.generation);
+            },
+            is -> new CommitRequest(is.readInt(), MessageCodec.readBytes(is), MessageCodec.readMonotonicId(is)));
+
+    public static final MessageCodec<CommitRequest> PROTOBUF_CODEC = MessageCodec.protobuf(CommitRequest.class,
+            request -> {
+                var proto = PaxosLogCommitRequest.newBuilder().setIndex(request.index);
+                if (request.committedValue != null) proto.setCommittedValue(Protobufs.toProto(request.committedValue));
+                if (request.generation != null) proto.setGeneration(Protobufs.toProto(request.generation));
+                return proto.build();
+            },
+            PaxosLogCommitRequest.parser(),
+            proto -> new CommitRequest(proto.getIndex(),
+                    proto.hasCommittedValue() ? proto.getCommittedValue().toByteArray() : null,
+                    proto.hasGeneration() ? Protobufs.fromProto(proto.getGeneration()) : null));
+
     public final int index;
     public final byte[] committedValue;
     public final MonotonicId generation;
@@ -1,10 +1,33 @@
 package replicate.paxoslog.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PaxosLogProposalRequest;
 
 public class ProposalRequest extends Request {
+    public static final MessageCodec<ProposalRequest> CODEC = MessageCodec.of(ProposalRequest.class,
+            (request, os) -> {
+                MessageCodec.writeMonotonicId(os, request.generation);
+                os.writeInt(request.index);
+                MessageCodec.writeBytes(os, request.proposedValue);
+            },
+            is -> new ProposalRequest(MessageCodec.readMonotonicId(is), is.readInt(), MessageCodec.readBytes(is)));
+
+    public static final MessageCodec<ProposalRequest> PROTOBUF_CODEC = MessageCodec.protobuf(ProposalRequest.class,
+            request -> {
+                var proto = PaxosLogProposalRequest.newBuilder().setIndex(request.index);
+                if (request.generation != null) proto.setGeneration(Protobufs.toProto(request.generation));
+                if (request.proposedValue != null) proto.setProposedValue(Protobufs.toProto(request.proposedValue));
+                return proto.build();
+            },
+            PaxosLogProposalRequest.parser(),
+            proto -> new ProposalRequest(proto.hasGeneration() ? Protobufs.fromProto(proto.getGeneration()) : null,
+                    proto.getIndex(),
+                    proto.hasProposedValue() ? proto.getProposedValue().toByteArray() : null));
+
     public final MonotonicId generation;
     public final int index;
     public final byte[] proposedValue;
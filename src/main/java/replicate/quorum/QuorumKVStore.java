@@ -69,6 +69,12 @@ public class QuorumKVStore extends Replica {
 
     @Override
     protected void registerHandlers() {
+        //binary codecs for the messages sent for every client request.
+        registerCodec(RequestId.VersionedSetValueRequest, VersionedSetValueRequest.CODEC, VersionedSetValueRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.SetValueResponse, SetValueResponse.CODEC, SetValueResponse.PROTOBUF_CODEC);
+        registerCodec(RequestId.VersionedGetValueRequest, GetValueRequest.CODEC, GetValueRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.GetValueResponse, GetValueResponse.CODEC, GetValueResponse.PROTOBUF_CODEC);
+
         //messages handled by replicas.
         handlesMessage(RequestId.VersionedSetValueRequest, this::handleSetValueRequest, VersionedSetValueRequest.class);
         handlesMessage(RequestId.SetValueResponse, this::handleSetValueResponse, SetValueResponse.class);
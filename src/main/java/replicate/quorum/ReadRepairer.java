@@ -10,7 +10,6 @@ import replicate.quorum.messages.VersionedSetValueRequest;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -37,10 +36,11 @@ class ReadRepairer {
         if (nodesHavingStaleValues.isEmpty()) {
             return CompletableFuture.completedFuture(latestStoredValue);
         }
-        var writeRequest = createSetValueRequest(latestStoredValue.getKey(), latestStoredValue.getValue(), latestStoredValue.getTimestamp());
         var requestCallback = new AsyncQuorumCallback<String>(nodesHavingStaleValues.size());
         for (InetAddressAndPort nodesHavingStaleValue : nodesHavingStaleValues) {
             logger.info("Sending read repair request to " + nodesHavingStaleValue + ":" + latestStoredValue.getValue());
+            //each node gets its own correlation id, so every response reaches the callback.
+            var writeRequest = createSetValueRequest(latestStoredValue.getKey(), latestStoredValue.getValue(), latestStoredValue.getTimestamp());
             replica.sendMessageToReplica(requestCallback, nodesHavingStaleValue, writeRequest);
         }
         if (isAsyncRepair) {
@@ -53,11 +53,10 @@ class ReadRepairer {
         }
     }
 
-    int requestId = new Random().nextInt();
     private RequestOrResponse createSetValueRequest(String key, String value, long timestamp) {
         VersionedSetValueRequest setValueRequest = new VersionedSetValueRequest(key, value, -1, -1, timestamp);
         RequestOrResponse requestOrResponse = new RequestOrResponse(RequestId.VersionedSetValueRequest.getId(),
-                JsonSerDes.serialize(setValueRequest), requestId++, replica.getPeerConnectionAddress());
+                replica.serialize(RequestId.VersionedSetValueRequest, setValueRequest), replica.newCorrelationId(), replica.getPeerConnectionAddress());
         return requestOrResponse;
     }
 
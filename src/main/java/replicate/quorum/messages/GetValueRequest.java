@@ -1,9 +1,24 @@
 package replicate.quorum.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumGetValueRequest;
 
 public class GetValueRequest extends Request {
+    public static final MessageCodec<GetValueRequest> CODEC = MessageCodec.of(GetValueRequest.class,
+            (request, os) -> MessageCodec.writeString(os, request.key),
+            is -> new GetValueRequest(MessageCodec.readString(is)));
+
+    public static final MessageCodec<GetValueRequest> PROTOBUF_CODEC = MessageCodec.protobuf(GetValueRequest.class,
+            request -> {
+                var proto = QuorumGetValueRequest.newBuilder();
+                if (request.key != null) proto.setKey(request.key);
+                return proto.build();
+            },
+            QuorumGetValueRequest.parser(),
+            proto -> new GetValueRequest(proto.hasKey() ? proto.getKey() : null));
+
     private String key;
     public GetValueRequest(String key) {
         super(RequestId.GetValueRequest);
@@ -1,10 +1,50 @@
 package replicate.quorum.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumGetValueResponse;
+import replicate.pb.QuorumStoredValue;
 import replicate.quorum.StoredValue;
 
 public class GetValueResponse extends Request {
+    public static final MessageCodec<GetValueResponse> CODEC = MessageCodec.of(GetValueResponse.class,
+            (response, os) -> {
+                os.writeBoolean(response.value != null);
+                if (response.value != null) {
+                    MessageCodec.writeString(os, response.value.getKey());
+                    MessageCodec.writeString(os, response.value.getValue());
+                    os.writeLong(response.value.getTimestamp());
+                    os.writeInt(response.value.getGeneration());
+                }
+            },
+            is -> new GetValueResponse(is.readBoolean() ? new StoredValue(MessageCodec.readString(is), MessageCodec.readString(is), is.readLong(), is.readInt()) : null));
+
+    public static final MessageCodec<GetValueResponse> PROTOBUF_CODEC = MessageCodec.protobuf(GetValueResponse.class,
+            response -> {
+                var proto = QuorumGetValueResponse.newBuilder();
+                if (response.value != null) {
+                    var value = QuorumStoredValue.newBuilder()
+                            .setTimestamp(response.value.getTimestamp())
+                            .setGeneration(response.value.getGeneration());
+                    if (response.value.getKey() != null) value.setKey(response.value.getKey());
+                    if (response.value.getValue() != null) value.setValue(response.value.getValue());
+                    proto.setValue(value.build());
+                }
+                return proto.build();
+            },
+            QuorumGetValueResponse.parser(),
+            proto -> {
+                if (!proto.hasValue()) {
+                    return new GetValueResponse(null);
+                }
+                QuorumStoredValue value = proto.getValue();
+                return new GetValueResponse(new StoredValue(value.hasKey() ? value.getKey() : null,
+                        value.hasValue() ? value.getValue() : null,
+                        value.getTimestamp(),
+                        value.getGeneration()));
+            });
+
     StoredValue value;
 
     public GetValueResponse(StoredValue value) {
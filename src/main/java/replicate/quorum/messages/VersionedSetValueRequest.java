@@ -1,9 +1,38 @@
 package replicate.quorum.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumVersionedSetValueRequest;
 
 public class VersionedSetValueRequest extends Request {
+    public static final MessageCodec<VersionedSetValueRequest> CODEC = MessageCodec.of(VersionedSetValueRequest.class,
+            (request, os) -> {
+                MessageCodec.writeString(os, request.key);
+                MessageCodec.writeString(os, request.value);
+                os.writeLong(request.clientId);
+                os.writeInt(request.requestNumber);
+                os.writeLong(request.version);
+            },
+            is -> new VersionedSetValueRequest(MessageCodec.readString(is), MessageCodec.readString(is), is.readLong(), is.readInt(), is.readLong()));
+
+    public static final MessageCodec<VersionedSetValueRequest> PROTOBUF_CODEC = MessageCodec.protobuf(VersionedSetValueRequest.class,
+            request -> {
+                var proto = QuorumVersionedSetValueRequest.newBuilder()
+                        .setClientId(request.clientId)
+                        .setRequestNumber(request.requestNumber)
+                        .setVersion(request.version);
+                if (request.key != null) proto.setKey(request.key);
+                if (request.value != null) proto.setValue(request.value);
+                return proto.build();
+            },
+            QuorumVersionedSetValueRequest.parser(),
+            proto -> new VersionedSetValueRequest(proto.hasKey() ? proto.getKey() : null,
+                    proto.hasValue() ? proto.getValue() : null,
+                    proto.getClientId(),
+                    proto.getRequestNumber(),
+                    proto.getVersion()));
+
     private long clientId;
     private int requestNumber;
     private String key;
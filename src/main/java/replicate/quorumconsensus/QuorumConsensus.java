@@ -27,6 +27,14 @@ public class QuorumConsensus extends Replica {
 
     @Override
     protected void registerHandlers() {
+        //binary codecs for the messages sent for every client request.
+        registerCodec(RequestId.VersionedSetValueRequest, VersionedSetValueRequest.CODEC, VersionedSetValueRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.SetValueResponse, SetValueResponse.CODEC, SetValueResponse.PROTOBUF_CODEC);
+        registerCodec(RequestId.VersionedGetValueRequest, GetValueRequest.CODEC, GetValueRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.GetValueResponse, GetValueResponse.CODEC, GetValueResponse.PROTOBUF_CODEC);
+        registerCodec(RequestId.GetVersion, GetVersionRequest.CODEC, GetVersionRequest.PROTOBUF_CODEC);
+        registerCodec(RequestId.GetVersionResponse, GetVersionResponse.CODEC, GetVersionResponse.PROTOBUF_CODEC);
+
         handlesMessage(RequestId.GetVersion, this::handleGetVersionRequest, GetVersionRequest.class);
         handlesMessage(RequestId.GetVersionResponse, this::handleGetVersionResponse, GetVersionResponse.class);
 
@@ -33,22 +33,21 @@ class ReadRepairer {
         if (nodesHavingStaleValues.isEmpty()) {
             return CompletableFuture.completedFuture(latestStoredValue);
         }
-        var writeRequest = createSetValueRequest(latestStoredValue.getKey(), latestStoredValue.getValue(), latestStoredValue.getVersion());
         var requestCallback = new AsyncQuorumCallback<String>(nodesHavingStaleValues.size());
         for (InetAddressAndPort nodesHavingStaleValue : nodesHavingStaleValues) {
             logger.info("Sending read repair request to " + nodesHavingStaleValue + ":" + latestStoredValue.getValue());
+            //each node gets its own correlation id, so every response reaches the callback.
+            var writeRequest = createSetValueRequest(latestStoredValue.getKey(), latestStoredValue.getValue(), latestStoredValue.getVersion());
             replica.sendMessageToReplica(requestCallback, nodesHavingStaleValue, writeRequest);
         }
         return requestCallback.getQuorumFuture()
                 .thenApply((result) -> latestStoredValue);
     }
 
-    int requestId;
-
     private RequestOrResponse createSetValueRequest(String key, String value, MonotonicId timestamp) {
         VersionedSetValueRequest setValueRequest = new VersionedSetValueRequest(key, value, timestamp);
         RequestOrResponse requestOrResponse = new RequestOrResponse(RequestId.VersionedSetValueRequest.getId(),
-                JsonSerDes.serialize(setValueRequest), requestId++, replica.getPeerConnectionAddress());
+                replica.serialize(RequestId.VersionedSetValueRequest, setValueRequest), replica.newCorrelationId(), replica.getPeerConnectionAddress());
         return requestOrResponse;
     }
 
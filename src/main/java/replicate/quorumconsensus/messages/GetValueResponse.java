@@ -1,10 +1,48 @@
 package replicate.quorumconsensus.messages;
 
+import replicate.common.MessageCodec;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumConsensusGetValueResponse;
+import replicate.pb.QuorumConsensusStoredValue;
 import replicate.quorumconsensus.StoredValue;
 
 public class GetValueResponse extends Request {
+    public static final MessageCodec<GetValueResponse> CODEC = MessageCodec.of(GetValueResponse.class,
+            (response, os) -> {
+                os.writeBoolean(response.value != null);
+                if (response.value != null) {
+                    MessageCodec.writeString(os, response.value.getKey());
+                    MessageCodec.writeString(os, response.value.getValue());
+                    MessageCodec.writeMonotonicId(os, response.value.getVersion());
+                }
+            },
+            is -> new GetValueResponse(is.readBoolean() ? new StoredValue(MessageCodec.readString(is), MessageCodec.readString(is), MessageCodec.readMonotonicId(is)) : null));
+
+    public static final MessageCodec<GetValueResponse> PROTOBUF_CODEC = MessageCodec.protobuf(GetValueResponse.class,
+            response -> {
+                var proto = QuorumConsensusGetValueResponse.newBuilder();
+                if (response.value != null) {
+                    var value = QuorumConsensusStoredValue.newBuilder();
+                    if (response.value.getKey() != null) value.setKey(response.value.getKey());
+                    if (response.value.getValue() != null) value.setValue(response.value.getValue());
+                    if (response.value.getVersion() != null) value.setVersion(Protobufs.toProto(response.value.getVersion()));
+                    proto.setValue(value.build());
+                }
+                return proto.build();
+            },
+            QuorumConsensusGetValueResponse.parser(),
+            proto -> {
+                if (!proto.hasValue()) {
+                    return new GetValueResponse(null);
+                }
+                QuorumConsensusStoredValue value = proto.getValue();
+                return new GetValueResponse(new StoredValue(value.hasKey() ? value.getKey() : null,
+                        value.hasValue() ? value.getValue() : null,
+                        value.hasVersion() ? Protobufs.fromProto(value.getVersion()) : null));
+            });
+
     StoredValue value;
 
     public GetValueResponse(StoredValue value) {
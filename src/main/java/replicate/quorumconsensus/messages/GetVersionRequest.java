@@ -1,9 +1,24 @@
 package replicate.quorumconsensus.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumConsensusGetVersionRequest;
 
 public class GetVersionRequest extends Request {
+    public static final MessageCodec<GetVersionRequest> CODEC = MessageCodec.of(GetVersionRequest.class,
+            (request, os) -> MessageCodec.writeString(os, request.key),
+            is -> new GetVersionRequest(MessageCodec.readString(is)));
+
+    public static final MessageCodec<GetVersionRequest> PROTOBUF_CODEC = MessageCodec.protobuf(GetVersionRequest.class,
+            request -> {
+                var proto = QuorumConsensusGetVersionRequest.newBuilder();
+                if (request.key != null) proto.setKey(request.key);
+                return proto.build();
+            },
+            QuorumConsensusGetVersionRequest.parser(),
+            proto -> new GetVersionRequest(proto.hasKey() ? proto.getKey() : null));
+
     String key;
 
     public GetVersionRequest(String key) {
@@ -1,10 +1,26 @@
 package replicate.quorumconsensus.messages;
 
 import replicate.common.MonotonicId;
+import replicate.common.MessageCodec;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumConsensusGetVersionResponse;
 
 public class GetVersionResponse extends Request {
+    public static final MessageCodec<GetVersionResponse> CODEC = MessageCodec.of(GetVersionResponse.class,
+            (response, os) -> MessageCodec.writeMonotonicId(os, response.id),
+            is -> new GetVersionResponse(MessageCodec.readMonotonicId(is)));
+
+    public static final MessageCodec<GetVersionResponse> PROTOBUF_CODEC = MessageCodec.protobuf(GetVersionResponse.class,
+            response -> {
+                var proto = QuorumConsensusGetVersionResponse.newBuilder();
+                if (response.id != null) proto.setVersion(Protobufs.toProto(response.id));
+                return proto.build();
+            },
+            QuorumConsensusGetVersionResponse.parser(),
+            proto -> new GetVersionResponse(proto.hasVersion() ? Protobufs.fromProto(proto.getVersion()) : null));
+
     MonotonicId id;
 
     public GetVersionResponse(MonotonicId id) {
@@ -1,9 +1,24 @@
 package replicate.quorumconsensus.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumConsensusSetValueResponse;
 
 public class SetValueResponse extends Request {
+    public static final MessageCodec<SetValueResponse> CODEC = MessageCodec.of(SetValueResponse.class,
+            (response, os) -> MessageCodec.writeString(os, response.result),
+            is -> new SetValueResponse(MessageCodec.readString(is)));
+
+    public static final MessageCodec<SetValueResponse> PROTOBUF_CODEC = MessageCodec.protobuf(SetValueResponse.class,
+            response -> {
+                var proto = QuorumConsensusSetValueResponse.newBuilder();
+                if (response.result != null) proto.setResult(response.result);
+                return proto.build();
+            },
+            QuorumConsensusSetValueResponse.parser(),
+            proto -> new SetValueResponse(proto.hasResult() ? proto.getResult() : null));
+
     String result;
 
     public SetValueResponse(String result) {
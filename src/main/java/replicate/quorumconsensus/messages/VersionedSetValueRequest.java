@@ -1,10 +1,34 @@
 package replicate.quorumconsensus.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.MonotonicId;
+import replicate.common.Protobufs;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.QuorumConsensusVersionedSetValueRequest;
 
 public class VersionedSetValueRequest extends Request {
+    public static final MessageCodec<VersionedSetValueRequest> CODEC = MessageCodec.of(VersionedSetValueRequest.class,
+            (request, os) -> {
+                MessageCodec.writeString(os, request.key);
+                MessageCodec.writeString(os, request.value);
+                MessageCodec.writeMonotonicId(os, request.version);
+            },
+            is -> new VersionedSetValueRequest(MessageCodec.readString(is), MessageCodec.readString(is), MessageCodec.readMonotonicId(is)));
+
+    public static final MessageCodec<VersionedSetValueRequest> PROTOBUF_CODEC = MessageCodec.protobuf(VersionedSetValueRequest.class,
+            request -> {
+                var proto = QuorumConsensusVersionedSetValueRequest.newBuilder();
+                if (request.key != null) proto.setKey(request.key);
+                if (request.value != null) proto.setValue(request.value);
+                if (request.version != null) proto.setVersion(Protobufs.toProto(request.version));
+                return proto.build();
+            },
+            QuorumConsensusVersionedSetValueRequest.parser(),
+            proto -> new VersionedSetValueRequest(proto.hasKey() ? proto.getKey() : null,
+                    proto.hasValue() ? proto.getValue() : null,
+                    proto.hasVersion() ? Protobufs.fromProto(proto.getVersion()) : null));
+
     public final String key;
     public final String value;
     public final MonotonicId version;
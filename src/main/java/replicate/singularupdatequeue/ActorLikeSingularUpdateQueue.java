@@ -96,4 +96,19 @@ public class ActorLikeSingularUpdateQueue<Req, Res> implements Runnable, Logging
     public void start() {
 
     }
+
+    //Used by BatchingActorLikeSingularUpdateQueue, which handles more than one request per activation.
+    RequestWrapper<Req, Res> poll() {
+        return workQueue.poll();
+    }
+
+    Res applyHandler(Req request) {
+        return handler.apply(request);
+    }
+
+    //gives the executor thread back, and schedules the queue again if requests are waiting.
+    void activationDone() {
+        isScheduled.set(false);
+        registerForExecution();
+    }
 }
@@ -0,0 +1,14 @@
+package replicate.singularupdatequeue;
+
+import java.util.List;
+
+/**
+ * Handles all the requests a BatchingSingularUpdateQueue drained in one wakeup,
+ * so work like flushing a log or sending messages can be done once per batch.
+ */
+@FunctionalInterface
+public interface BatchHandler<Req, Res> {
+    //returns a response for each request, in the same order.
+    //null completes all the requests with null, for queues without responses.
+    List<Res> handle(List<Req> requests);
+}
@@ -0,0 +1,193 @@
+package replicate.singularupdatequeue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A singular update queue which blocks its thread while the queue is empty, instead of polling it,
+ * and takes all the requests queued when it wakes up, up to maxDrainSize, as one batch.
+ * The requests in a batch are handled one at a time, or all together by a BatchHandler,
+ * so work like flushing a log or sending messages can be done once per batch.
+ * It is a thread of its own, like SingularUpdateQueue, but does not extend it,
+ * so it has none of SingularUpdateQueue's queue or polling loop.
+ */
+public class BatchingSingularUpdateQueue<Req, Res> extends Thread {
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private final WorkQueue<RequestWrapper<Req, Res>> workQueue;
+    private final int maxDrainSize;
+    private Function<Req, Res> handler;
+    private BatchHandler<Req, Res> batchHandler;
+    private volatile boolean isRunning = false;
+    //put by shutdown to wake up the thread blocked on an empty queue.
+    private final RequestWrapper<Req, Res> shutdownMarker = new RequestWrapper<>(null);
+
+    private final LongAdder requestsHandled = new LongAdder();
+    private final LongAdder batchesHandled = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Long::max, 0);
+
+    //Handles the requests one at a time, but drains them from the queue in batches.
+    public BatchingSingularUpdateQueue(Function<Req, Res> handler, int capacity, int maxDrainSize) {
+        this(WorkQueue.of(new ArrayBlockingQueue<>(capacity)), maxDrainSize);
+        this.handler = handler;
+    }
+
+    private BatchingSingularUpdateQueue(WorkQueue<RequestWrapper<Req, Res>> workQueue, int maxDrainSize) {
+        if (maxDrainSize < 1) {
+            throw new IllegalArgumentException("maxDrainSize should be at least 1. Was " + maxDrainSize);
+        }
+        this.workQueue = workQueue;
+        this.maxDrainSize = maxDrainSize;
+    }
+
+    public static <Req, Res> BatchingSingularUpdateQueue<Req, Res> batching(BatchHandler<Req, Res> batchHandler, int capacity, int maxDrainSize) {
+        BatchingSingularUpdateQueue<Req, Res> queue = new BatchingSingularUpdateQueue<>(WorkQueue.of(new ArrayBlockingQueue<>(capacity)), maxDrainSize);
+        queue.batchHandler = batchHandler;
+        return queue;
+    }
+
+    //Requests are queued on a lock free MpscRingBuffer instead of an ArrayBlockingQueue,
+    //so threads submitting requests do not contend on a lock.
+    public static <Req, Res> BatchingSingularUpdateQueue<Req, Res> batchingOnRingBuffer(BatchHandler<Req, Res> batchHandler, int capacity, int maxDrainSize, WaitStrategy waitStrategy) {
+        BatchingSingularUpdateQueue<Req, Res> queue = new BatchingSingularUpdateQueue<>(new MpscRingBuffer<>(capacity, waitStrategy), maxDrainSize);
+        queue.batchHandler = batchHandler;
+        return queue;
+    }
+
+    public CompletableFuture<Res> submit(Req request) {
+        try {
+            var requestWrapper = new RequestWrapper<Req, Res>(request);
+            workQueue.put(requestWrapper);
+            return requestWrapper.getFuture();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //does not wait for space in the queue, so it can be called from the queue's own thread.
+    public boolean offer(Req request) {
+        return workQueue.offer(new RequestWrapper<Req, Res>(request));
+    }
+
+    @Override
+    public void run() {
+        isRunning = true;
+        List<RequestWrapper<Req, Res>> batch = new ArrayList<>(maxDrainSize);
+        while (isRunning) {
+            try {
+                maxQueueDepth.accumulate(workQueue.size());
+                batch.add(workQueue.take());
+                workQueue.drainTo(batch, maxDrainSize - 1);
+            } catch (InterruptedException e) {
+                continue; //isRunning is checked again.
+            }
+            //shutdown can be called before this thread sets isRunning.
+            boolean isShutdown = batch.remove(shutdownMarker);
+            if (!batch.isEmpty()) {
+                handle(batch);
+            }
+            batch.clear();
+            if (isShutdown) {
+                break;
+            }
+        }
+        isRunning = false;
+    }
+
+    public void shutdown() {
+        this.isRunning = false;
+        //if the queue is full, the thread is not blocked and sees isRunning after the current batch.
+        workQueue.offer(shutdownMarker);
+    }
+
+    private void handle(List<RequestWrapper<Req, Res>> batch) {
+        long now = System.nanoTime();
+        for (RequestWrapper<Req, Res> requestWrapper : batch) {
+            queueWaitNanos.add(now - requestWrapper.getEnqueuedNanos());
+        }
+        //counted before the futures complete, so callers see the counts of requests they got responses for.
+        requestsHandled.add(batch.size());
+        batchesHandled.increment();
+        if (batchHandler == null) {
+            handleOneAtATime(batch);
+        } else {
+            handleAll(batch);
+        }
+    }
+
+    //a failing request fails only itself, not the rest of the batch.
+    private void handleOneAtATime(List<RequestWrapper<Req, Res>> batch) {
+        for (RequestWrapper<Req, Res> requestWrapper : batch) {
+            try {
+                requestWrapper.complete(handler.apply(requestWrapper.getRequest()));
+            } catch (Exception e) {
+                requestWrapper.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void handleAll(List<RequestWrapper<Req, Res>> batch) {
+        List<Req> requests = new ArrayList<>(batch.size());
+        for (RequestWrapper<Req, Res> requestWrapper : batch) {
+            requests.add(requestWrapper.getRequest());
+        }
+        try {
+            List<Res> responses = batchHandler.handle(requests);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(responses == null ? null : responses.get(i));
+            }
+        } catch (Exception e) {
+            batch.forEach(requestWrapper -> requestWrapper.completeExceptionally(e));
+        }
+    }
+
+    public int taskCount() {
+        return workQueue.size();
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public boolean usesRingBuffer() {
+        return workQueue instanceof MpscRingBuffer;
+    }
+
+    public int getCapacity() {
+        return workQueue.size() + workQueue.remainingCapacity();
+    }
+
+    //largest number of requests found waiting when the thread went to take more.
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getRequestsHandled() {
+        return requestsHandled.sum();
+    }
+
+    public long getBatchesHandled() {
+        return batchesHandled.sum();
+    }
+
+    //total time requests spent in the queue before their batch was handled.
+    public long getQueueWaitNanos() {
+        return queueWaitNanos.sum();
+    }
+
+    public long getAverageQueueWaitNanos() {
+        long handled = requestsHandled.sum();
+        return handled == 0 ? 0 : queueWaitNanos.sum() / handled;
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "[queued=" + taskCount() + ", capacity=" + getCapacity() + "]";
+    }
+}
@@ -0,0 +1,200 @@
+package replicate.singularupdatequeue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi producer, single consumer queue on a pre-allocated ring of slots, in the style of the Disruptor.
+ * Producers claim the next sequence with a CAS and publish the request by writing it to the slot
+ * the sequence maps to. The single consumer reads slots in sequence order, clears them and
+ * moves its own sequence forward, which frees the slots for producers. There are no locks,
+ * so producers on different threads never block each other.
+ *
+ *   consumerSequence          producerSequence
+ *         |                         |
+ *  [ ][ ][a][b][ ][d][ ][ ][ ][ ][ ][ ]
+ *          ^      ^
+ *          |      published out of order, waits for c.
+ *          next to take
+ *
+ * Only one thread may take requests. Producers waiting for space in a full ring back off
+ * as the wait strategy says, but are never woken up by the consumer.
+ * It is not a java.util.Queue, as iterating or removing from the middle would race with the producers
+ * and the consumer.
+ */
+public class MpscRingBuffer<E> implements WorkQueue<E> {
+    private static final long PRODUCER_BACKOFF_NANOS = 50_000;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    //next sequence to be claimed by a producer.
+    private final AtomicLong producerSequence = new AtomicLong();
+    //next sequence to be taken by the consumer. Written only by the consumer.
+    private final AtomicLong consumerSequence = new AtomicLong();
+    private volatile Thread parkedConsumer;
+
+    public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1; //next power of two
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long sequence;
+        do {
+            sequence = producerSequence.get();
+            if (sequence - consumerSequence.get() >= slots.length()) {
+                return false; //full
+            }
+        } while (!producerSequence.compareAndSet(sequence, sequence + 1));
+        slots.set(index(sequence), e);
+        wakeUpConsumer();
+        return true;
+    }
+
+    private void wakeUpConsumer() {
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            backOff();
+        }
+    }
+
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            backOff();
+        }
+        return true;
+    }
+
+    private void backOff() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        switch (waitStrategy) {
+            case BUSY_SPIN -> Thread.onSpinWait();
+            case YIELD -> Thread.yield();
+            case PARK -> LockSupport.parkNanos(PRODUCER_BACKOFF_NANOS);
+        }
+    }
+
+    public E poll() {
+        long sequence = consumerSequence.get();
+        int index = index(sequence);
+        E e = slots.get(index);
+        if (e == null) {
+            return null; //empty, or the producer of this sequence has not published yet.
+        }
+        slots.lazySet(index, null);
+        consumerSequence.lazySet(sequence + 1);
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null) {
+            waitForProducer();
+        }
+        return e;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+        while ((e = poll()) == null) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            waitForProducer();
+        }
+        return e;
+    }
+
+    private void waitForProducer() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        switch (waitStrategy) {
+            case BUSY_SPIN -> Thread.onSpinWait();
+            case YIELD -> Thread.yield();
+            case PARK -> park();
+        }
+    }
+
+    //A producer publishes before reading parkedConsumer, and the consumer sets parkedConsumer
+    //before checking the slot again, so one of them always sees the other.
+    private void park() {
+        parkedConsumer = Thread.currentThread();
+        if (peek() == null) {
+            LockSupport.park(this);
+        }
+        parkedConsumer = null;
+    }
+
+    public E peek() {
+        return slots.get(index(consumerSequence.get()));
+    }
+
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int drained = 0;
+        E e;
+        while (drained < maxElements && (e = poll()) != null) {
+            c.add(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    //includes sequences claimed but not yet published.
+    @Override
+    public int size() {
+        return (int) Math.max(0, producerSequence.get() - consumerSequence.get());
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return slots.length() - size();
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MpscRingBuffer[size=" + size() + ", capacity=" + slots.length() + ", waitStrategy=" + waitStrategy + "]";
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+}
@@ -15,6 +15,12 @@ class RequestWrapper<Req, Res> {
     public Req getRequest()                   { return request; }
     //</codeFragment>
 
+    private final long enqueuedNanos = System.nanoTime();
+
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
 //<codeFragment name = "complete" >
     public void complete(Res response) {
         future.complete(response);
@@ -0,0 +1,13 @@
+package replicate.singularupdatequeue;
+
+/**
+ * How the thread consuming an MpscRingBuffer waits for requests.
+ * BUSY_SPIN gives the lowest latency but keeps a core busy,
+ * YIELD lets other threads run on that core,
+ * PARK frees the core and is woken up by the producer of the next request.
+ */
+public enum WaitStrategy {
+    BUSY_SPIN,
+    YIELD,
+    PARK
+}
@@ -0,0 +1,60 @@
+package replicate.singularupdatequeue;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The operations BatchingSingularUpdateQueue needs from the queue between the threads
+ * submitting requests and its update thread. Only the update thread takes requests.
+ * @see MpscRingBuffer
+ */
+public interface WorkQueue<E> {
+    //waits for space in the queue.
+    void put(E e) throws InterruptedException;
+
+    //false if the queue is full.
+    boolean offer(E e);
+
+    //waits for an element.
+    E take() throws InterruptedException;
+
+    int drainTo(Collection<? super E> c, int maxElements);
+
+    int size();
+
+    int remainingCapacity();
+
+    static <E> WorkQueue<E> of(BlockingQueue<E> queue) {
+        return new WorkQueue<>() {
+            @Override
+            public void put(E e) throws InterruptedException {
+                queue.put(e);
+            }
+
+            @Override
+            public boolean offer(E e) {
+                return queue.offer(e);
+            }
+
+            @Override
+            public E take() throws InterruptedException {
+                return queue.take();
+            }
+
+            @Override
+            public int drainTo(Collection<? super E> c, int maxElements) {
+                return queue.drainTo(c, maxElements);
+            }
+
+            @Override
+            public int size() {
+                return queue.size();
+            }
+
+            @Override
+            public int remainingCapacity() {
+                return queue.remainingCapacity();
+            }
+        };
+    }
+}
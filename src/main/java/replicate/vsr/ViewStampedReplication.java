@@ -93,6 +93,15 @@ public class ViewStampedReplication extends Replica {
 
     @Override
     protected void registerHandlers() {
+        //binary codecs for the messages sent for every client request.
+        registerCodec(RequestId.Prepare, Prepare.CODEC, Prepare.PROTOBUF_CODEC);
+        registerCodec(RequestId.PrepareOK, PrepareOK.CODEC, PrepareOK.PROTOBUF_CODEC);
+        registerCodec(RequestId.Commit, Commit.CODEC, Commit.PROTOBUF_CODEC);
+        //and for view changes, so the whole protocol uses one wire format.
+        registerCodec(RequestId.StartViewChange, StartViewChange.CODEC, StartViewChange.PROTOBUF_CODEC);
+        registerCodec(RequestId.DoViewChange, DoViewChange.CODEC, DoViewChange.PROTOBUF_CODEC);
+        registerCodec(RequestId.StartView, StartView.CODEC, StartView.PROTOBUF_CODEC);
+
         //client interface rpc
         handlesRequestAsync(RequestId.ExcuteCommandRequest, this::handleClientRequest, ExecuteCommandRequest.class);
 
@@ -228,11 +237,21 @@ public class ViewStampedReplication extends Replica {
         public LogEntry(ExecuteCommandRequest request) {
             this.request = request;
         }
+
+        //for the codecs of the messages carrying the log.
+        public LogEntry(ExecuteCommandRequest request, int acks) {
+            this.request = request;
+            this.acks = acks;
+        }
         private int acks;
         public void prepareOK() {
             acks++;
         }
 
+        public int getAcks() {
+            return acks;
+        }
+
         public boolean isQuorumAccepted(int quorum) {
             return acks == quorum;
         }
@@ -1,9 +1,26 @@
 package replicate.vsr.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.CommitProto;
 
 public class Commit extends Request {
+    public static final MessageCodec<Commit> CODEC = MessageCodec.of(Commit.class,
+            (request, os) -> {
+                os.writeInt(request.viewNumber);
+                os.writeInt(request.commitNumber);
+            },
+            is -> new Commit(is.readInt(), is.readInt()));
+
+    public static final MessageCodec<Commit> PROTOBUF_CODEC = MessageCodec.protobuf(Commit.class,
+            request -> CommitProto.newBuilder()
+                    .setViewNumber(request.viewNumber)
+                    .setCommitNumber(request.commitNumber)
+                    .build(),
+            CommitProto.parser(),
+            proto -> new Commit(proto.getViewNumber(), proto.getCommitNumber()));
+
     public final int viewNumber;
     public final int commitNumber;
 
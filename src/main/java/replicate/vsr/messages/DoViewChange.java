@@ -1,12 +1,41 @@
 package replicate.vsr.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.DoViewChangeProto;
 import replicate.vsr.ViewStampedReplication;
 
 import java.util.Map;
 
 public class DoViewChange extends Request {
+    public static final MessageCodec<DoViewChange> CODEC = MessageCodec.of(DoViewChange.class,
+            (request, os) -> {
+                os.writeInt(request.viewNumber);
+                LogEntryCodec.writeLog(os, request.log);
+                os.writeInt(request.normalStatusViewNumber);
+                os.writeInt(request.opNumber);
+                os.writeInt(request.commitNumber);
+            },
+            is -> new DoViewChange(is.readInt(), LogEntryCodec.readLog(is), is.readInt(), is.readInt(), is.readInt()));
+
+    public static final MessageCodec<DoViewChange> PROTOBUF_CODEC = MessageCodec.protobuf(DoViewChange.class,
+            request -> {
+                var proto = DoViewChangeProto.newBuilder()
+                        .setViewNumber(request.viewNumber)
+                        .setNormalStatusViewNumber(request.normalStatusViewNumber)
+                        .setOpNumber(request.opNumber)
+                        .setCommitNumber(request.commitNumber);
+                request.log.forEach((opNumber, entry) -> proto.addLog(LogEntryCodec.toProto(opNumber, entry)));
+                return proto.build();
+            },
+            DoViewChangeProto.parser(),
+            proto -> new DoViewChange(proto.getViewNumber(),
+                    LogEntryCodec.fromProto(proto.getLogList()),
+                    proto.getNormalStatusViewNumber(),
+                    proto.getOpNumber(),
+                    proto.getCommitNumber()));
+
     public final int viewNumber;
     public final Map<Integer, ViewStampedReplication.LogEntry> log;
     public final int normalStatusViewNumber;
@@ -0,0 +1,79 @@
+package replicate.vsr.messages;
+
+import replicate.common.MessageCodec;
+import replicate.common.Protobufs;
+import replicate.pb.ExecuteCommandRequestProto;
+import replicate.pb.LogEntryProto;
+import replicate.twophaseexecution.messages.ExecuteCommandRequest;
+import replicate.vsr.ViewStampedReplication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding of the client requests and the log carried by the VSR messages,
+ * shared by their binary and protobuf codecs.
+ * The log is decoded into a HashMap, as the replica receiving it keeps appending to it.
+ */
+class LogEntryCodec {
+
+    static void writeRequest(DataOutputStream os, ExecuteCommandRequest request) throws IOException {
+        os.writeBoolean(request != null);
+        if (request != null) {
+            MessageCodec.writeBytes(os, request.command);
+        }
+    }
+
+    static ExecuteCommandRequest readRequest(DataInputStream is) throws IOException {
+        return is.readBoolean() ? new ExecuteCommandRequest(MessageCodec.readBytes(is)) : null;
+    }
+
+    static void writeLog(DataOutputStream os, Map<Integer, ViewStampedReplication.LogEntry> log) throws IOException {
+        os.writeInt(log.size());
+        for (Map.Entry<Integer, ViewStampedReplication.LogEntry> entry : log.entrySet()) {
+            os.writeInt(entry.getKey());
+            writeRequest(os, entry.getValue().request);
+            os.writeInt(entry.getValue().getAcks());
+        }
+    }
+
+    static Map<Integer, ViewStampedReplication.LogEntry> readLog(DataInputStream is) throws IOException {
+        int size = is.readInt();
+        Map<Integer, ViewStampedReplication.LogEntry> log = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int opNumber = is.readInt();
+            log.put(opNumber, new ViewStampedReplication.LogEntry(readRequest(is), is.readInt()));
+        }
+        return log;
+    }
+
+    static ExecuteCommandRequestProto toProto(ExecuteCommandRequest request) {
+        var proto = ExecuteCommandRequestProto.newBuilder();
+        if (request.command != null) proto.setCommand(Protobufs.toProto(request.command));
+        return proto.build();
+    }
+
+    static ExecuteCommandRequest fromProto(ExecuteCommandRequestProto proto) {
+        return new ExecuteCommandRequest(proto.hasCommand() ? proto.getCommand().toByteArray() : null);
+    }
+
+    static LogEntryProto toProto(int opNumber, ViewStampedReplication.LogEntry entry) {
+        var proto = LogEntryProto.newBuilder()
+                .setOpNumber(opNumber)
+                .setAcks(entry.getAcks());
+        if (entry.request != null) proto.setRequest(toProto(entry.request));
+        return proto.build();
+    }
+
+    static Map<Integer, ViewStampedReplication.LogEntry> fromProto(List<LogEntryProto> entries) {
+        Map<Integer, ViewStampedReplication.LogEntry> log = new HashMap<>();
+        for (LogEntryProto entry : entries) {
+            log.put(entry.getOpNumber(), new ViewStampedReplication.LogEntry(entry.hasRequest() ? fromProto(entry.getRequest()) : null, entry.getAcks()));
+        }
+        return log;
+    }
+}
@@ -1,10 +1,36 @@
 package replicate.vsr.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PrepareProto;
 import replicate.twophaseexecution.messages.ExecuteCommandRequest;
 
 public class Prepare extends Request {
+    public static final MessageCodec<Prepare> CODEC = MessageCodec.of(Prepare.class,
+            (request, os) -> {
+                os.writeInt(request.viewNumber);
+                LogEntryCodec.writeRequest(os, request.request);
+                os.writeInt(request.opNumber);
+                os.writeInt(request.commitNumber);
+            },
+            is -> new Prepare(is.readInt(), LogEntryCodec.readRequest(is), is.readInt(), is.readInt()));
+
+    public static final MessageCodec<Prepare> PROTOBUF_CODEC = MessageCodec.protobuf(Prepare.class,
+            request -> {
+                var proto = PrepareProto.newBuilder()
+                        .setViewNumber(request.viewNumber)
+                        .setOpNumber(request.opNumber)
+                        .setCommitNumber(request.commitNumber);
+                if (request.request != null) proto.setRequest(LogEntryCodec.toProto(request.request));
+                return proto.build();
+            },
+            PrepareProto.parser(),
+            proto -> new Prepare(proto.getViewNumber(),
+                    proto.hasRequest() ? LogEntryCodec.fromProto(proto.getRequest()) : null,
+                    proto.getOpNumber(),
+                    proto.getCommitNumber()));
+
     public final int viewNumber;
     public final ExecuteCommandRequest request;
     public final int opNumber;
@@ -1,9 +1,30 @@
 package replicate.vsr.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.PrepareOKProto;
 
 public class PrepareOK extends Request {
+    public static final MessageCodec<PrepareOK> CODEC = MessageCodec.of(PrepareOK.class,
+            (request, os) -> {
+                os.writeInt(request.viewNumber);
+                os.writeInt(request.opNumber);
+                os.writeInt(request.replicaIndex);
+                os.writeBoolean(request.isAck);
+            },
+            is -> new PrepareOK(is.readInt(), is.readInt(), is.readInt(), is.readBoolean()));
+
+    public static final MessageCodec<PrepareOK> PROTOBUF_CODEC = MessageCodec.protobuf(PrepareOK.class,
+            request -> PrepareOKProto.newBuilder()
+                    .setViewNumber(request.viewNumber)
+                    .setOpNumber(request.opNumber)
+                    .setReplicaIndex(request.replicaIndex)
+                    .setIsAck(request.isAck)
+                    .build(),
+            PrepareOKProto.parser(),
+            proto -> new PrepareOK(proto.getViewNumber(), proto.getOpNumber(), proto.getReplicaIndex(), proto.getIsAck()));
+
     public final int viewNumber;
     public final int opNumber;
     public final int replicaIndex;
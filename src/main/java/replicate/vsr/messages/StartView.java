@@ -1,12 +1,33 @@
 package replicate.vsr.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.StartViewProto;
 import replicate.vsr.ViewStampedReplication;
 
 import java.util.Map;
 
 public class StartView extends Request {
+    public static final MessageCodec<StartView> CODEC = MessageCodec.of(StartView.class,
+            (request, os) -> {
+                LogEntryCodec.writeLog(os, request.log);
+                os.writeInt(request.opNumber);
+                os.writeInt(request.commitNumber);
+            },
+            is -> new StartView(LogEntryCodec.readLog(is), is.readInt(), is.readInt()));
+
+    public static final MessageCodec<StartView> PROTOBUF_CODEC = MessageCodec.protobuf(StartView.class,
+            request -> {
+                var proto = StartViewProto.newBuilder()
+                        .setOpNumber(request.opNumber)
+                        .setCommitNumber(request.commitNumber);
+                request.log.forEach((opNumber, entry) -> proto.addLog(LogEntryCodec.toProto(opNumber, entry)));
+                return proto.build();
+            },
+            StartViewProto.parser(),
+            proto -> new StartView(LogEntryCodec.fromProto(proto.getLogList()), proto.getOpNumber(), proto.getCommitNumber()));
+
     public final Map<Integer, ViewStampedReplication.LogEntry> log;
     public final int opNumber;
     public final int commitNumber;
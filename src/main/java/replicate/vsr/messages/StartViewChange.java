@@ -1,9 +1,28 @@
 package replicate.vsr.messages;
 
+import replicate.common.MessageCodec;
 import replicate.common.Request;
 import replicate.common.RequestId;
+import replicate.pb.StartViewChangeProto;
 
 public class StartViewChange extends Request {
+    public static final MessageCodec<StartViewChange> CODEC = MessageCodec.of(StartViewChange.class,
+            (request, os) -> {
+                os.writeInt(request.startViewChange.getId());
+                os.writeInt(request.viewNumber);
+                os.writeInt(request.replicaIndex);
+            },
+            is -> new StartViewChange(RequestId.valueOf(is.readInt()), is.readInt(), is.readInt()));
+
+    public static final MessageCodec<StartViewChange> PROTOBUF_CODEC = MessageCodec.protobuf(StartViewChange.class,
+            request -> StartViewChangeProto.newBuilder()
+                    .setStartViewChange(request.startViewChange.getId())
+                    .setViewNumber(request.viewNumber)
+                    .setReplicaIndex(request.replicaIndex)
+                    .build(),
+            StartViewChangeProto.parser(),
+            proto -> new StartViewChange(RequestId.valueOf(proto.getStartViewChange()), proto.getViewNumber(), proto.getReplicaIndex()));
+
     public final RequestId startViewChange;
     public final int viewNumber;
     public final int replicaIndex;
@@ -0,0 +1,66 @@
+package replicate.common;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class CorrelationIdGeneratorTest {
+
+    @Test
+    public void allocatesUniqueIdsFromConcurrentThreads() throws InterruptedException {
+        var generator = new CorrelationIdGenerator(id -> false);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        int noOfThreads = 4;
+        int idsPerThread = 10000;
+        CountDownLatch done = new CountDownLatch(noOfThreads);
+        for (int i = 0; i < noOfThreads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < idsPerThread; j++) {
+                    ids.add(generator.next());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(noOfThreads * idsPerThread, ids.size());
+    }
+
+    @Test
+    public void skipsIdsStillPendingAfterWrapAround() {
+        Set<Integer> pending = Set.of(0, 1);
+        var generator = new CorrelationIdGenerator(Integer.MAX_VALUE - 1, pending::contains);
+
+        assertEquals(Integer.MAX_VALUE - 1, generator.next());
+        assertEquals(Integer.MAX_VALUE, generator.next());
+        assertEquals(2, generator.next());
+
+        assertEquals(1, generator.getWrapArounds());
+        assertEquals(2, generator.getCollisions());
+    }
+
+    @Test
+    public void doesNotCheckPendingIdsBeforeWrapAround() {
+        var generator = new CorrelationIdGenerator(id -> true);
+        assertEquals(0, generator.next());
+        assertEquals(1, generator.next());
+        assertEquals(0, generator.getCollisions());
+    }
+
+    @Test
+    public void doesNotCountWrapAroundBeforeIdsAreReused() {
+        var generator = new CorrelationIdGenerator(Integer.MAX_VALUE - 1, id -> true);
+        assertEquals(Integer.MAX_VALUE - 1, generator.next());
+        assertEquals(Integer.MAX_VALUE, generator.next());
+        assertEquals(0, generator.getWrapArounds());
+        assertEquals(0, generator.getCollisions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeFirstId() {
+        new CorrelationIdGenerator(-1, id -> false);
+    }
+}
@@ -0,0 +1,70 @@
+package replicate.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.ConstructorDetector;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import replicate.net.InetAddressAndPort;
+
+/**
+ * Compares the cost per message of a serialize + deserialize round trip
+ * with a new ObjectMapper for every call, as JsonSerDes used to do, against the cached JsonSerDes.
+ * Run with: java -cp <test classpath> replicate.common.JsonSerDesBenchmark
+ */
+public class JsonSerDesBenchmark {
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        RequestOrResponse message = new RequestOrResponse(RequestId.SetValueRequest.getId(), "{\"key\":\"title\",\"value\":\"Microservices\"}".getBytes(), 1, InetAddressAndPort.create("127.0.0.1", 9000));
+
+        run("new mapper per message", WARMUP, message, JsonSerDesBenchmark::uncachedRoundTrip);
+        run("cached JsonSerDes", WARMUP, message, JsonSerDesBenchmark::cachedRoundTrip);
+
+        long uncached = run("new mapper per message", ITERATIONS / 10, message, JsonSerDesBenchmark::uncachedRoundTrip);
+        long cached = run("cached JsonSerDes", ITERATIONS, message, JsonSerDesBenchmark::cachedRoundTrip);
+        System.out.printf("speedup: %.1fx%n", (double) uncached / cached);
+    }
+
+    interface RoundTrip {
+        RequestOrResponse apply(RequestOrResponse message) throws Exception;
+    }
+
+    private static long run(String name, int iterations, RequestOrResponse message, RoundTrip roundTrip) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (!message.equals(roundTrip.apply(message))) {
+                throw new IllegalStateException("Round trip failed for " + name);
+            }
+        }
+        long nanosPerMessage = (System.nanoTime() - start) / iterations;
+        System.out.println(name + ": " + nanosPerMessage + " ns/message");
+        return nanosPerMessage;
+    }
+
+    private static RequestOrResponse cachedRoundTrip(RequestOrResponse message) {
+        return JsonSerDes.deserialize(JsonSerDes.serialize(message), RequestOrResponse.class);
+    }
+
+    private static RequestOrResponse uncachedRoundTrip(RequestOrResponse message) throws Exception {
+        var writer = new ObjectMapper(new CBORFactory());
+        writer.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        writer.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        writer.registerModule(new Jdk8Module());
+        byte[] bytes = writer.writeValueAsBytes(message);
+
+        var reader = new ObjectMapper(new CBORFactory());
+        reader.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        reader.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        reader.registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+        reader.registerModule(new Jdk8Module());
+        reader.setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED);
+        return reader.readValue(bytes, RequestOrResponse.class);
+    }
+}
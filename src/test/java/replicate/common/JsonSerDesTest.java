@@ -0,0 +1,67 @@
+package replicate.common;
+
+import org.junit.Test;
+import replicate.net.InetAddressAndPort;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonSerDesTest {
+    InetAddressAndPort address = InetAddressAndPort.create("127.0.0.1", 9000);
+    RequestOrResponse message = new RequestOrResponse(1, RequestId.SetValueRequest.getId(), "body".getBytes(), 10, address).setError();
+
+    @Test
+    public void roundTripsMessagesThroughCbor() {
+        byte[] bytes = JsonSerDes.serialize(message);
+
+        assertEquals(message, JsonSerDes.deserialize(bytes, RequestOrResponse.class));
+        assertEquals(message, JsonSerDes.deserialize(ByteBuffer.wrap(bytes), RequestOrResponse.class));
+        assertEquals(true, JsonSerDes.deserialize(bytes, RequestOrResponse.class).isError());
+    }
+
+    @Test
+    public void roundTripsMapsKeyedByAddressThroughJson() {
+        var versions = Map.of(address, 5L);
+        var holder = new VersionsHolder();
+        holder.versions = versions;
+
+        Map<?, ?> deserialized = JsonSerDes.fromJson(JsonSerDes.toJson(holder).getBytes(), VersionsHolder.class).versions;
+
+        assertEquals(versions, deserialized);
+    }
+
+    @Test
+    public void serializesOptionals() {
+        var holder = new OptionalHolder();
+        holder.value = Optional.of("value");
+
+        assertEquals(holder.value, JsonSerDes.deserialize(JsonSerDes.serialize(holder), OptionalHolder.class).value);
+    }
+
+    @Test
+    public void cachedReadersAndWritersCanBeSharedAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            var results = executor.invokeAll(Collections.nCopies(100, (Callable<RequestOrResponse>) () ->
+                    JsonSerDes.deserialize(JsonSerDes.serialize(message), RequestOrResponse.class)));
+            for (Future<RequestOrResponse> result : results) {
+                assertEquals(message, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static class VersionsHolder {
+        Map<InetAddressAndPort, Long> versions;
+    }
+
+    static class OptionalHolder {
+        Optional<String> value;
+    }
+}
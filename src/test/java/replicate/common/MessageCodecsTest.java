@@ -0,0 +1,121 @@
+package replicate.common;
+
+import org.junit.Test;
+import replicate.paxoslog.messages.ProposalRequest;
+import replicate.quorum.StoredValue;
+import replicate.quorum.messages.GetValueResponse;
+import replicate.quorumconsensus.messages.VersionedSetValueRequest;
+import replicate.twophaseexecution.messages.ExecuteCommandRequest;
+import replicate.vsr.ViewStampedReplication;
+import replicate.vsr.messages.DoViewChange;
+import replicate.vsr.messages.PrepareOK;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MessageCodecsTest {
+    MessageCodecs codecs = new MessageCodecs()
+            .register(RequestId.ProposeRequest, ProposalRequest.CODEC)
+            .register(RequestId.VersionedSetValueRequest, VersionedSetValueRequest.CODEC);
+
+    @Test
+    public void encodesRegisteredMessagesWithTheirCodec() {
+        var proposal = new ProposalRequest(new MonotonicId(1, 2), 5, "value".getBytes());
+
+        byte[] bytes = codecs.serialize(RequestId.ProposeRequest, proposal);
+        var decoded = codecs.deserialize(RequestId.ProposeRequest, bytes, ProposalRequest.class);
+
+        assertEquals(proposal.generation, decoded.generation);
+        assertEquals(proposal.index, decoded.index);
+        assertArrayEquals(proposal.proposedValue, decoded.proposedValue);
+        assertEquals(RequestId.ProposeRequest, decoded.getRequestId());
+    }
+
+    @Test
+    public void encodesNullFields() {
+        var request = new VersionedSetValueRequest("key", null, null);
+
+        var decoded = codecs.deserialize(RequestId.VersionedSetValueRequest, codecs.serialize(RequestId.VersionedSetValueRequest, request), VersionedSetValueRequest.class);
+
+        assertEquals("key", decoded.key);
+        assertNull(decoded.value);
+        assertNull(decoded.version);
+    }
+
+    @Test
+    public void fallsBackToJsonSerDesForMessagesWithoutCodec() {
+        var prepareOK = new PrepareOK(1, 2, 3, true);
+
+        byte[] bytes = codecs.serialize(RequestId.PrepareOK, prepareOK);
+
+        assertFalse(codecs.hasCodec(RequestId.PrepareOK, PrepareOK.class));
+        assertEquals(3, JsonSerDes.deserialize(bytes, PrepareOK.class).replicaIndex);
+    }
+
+    @Test
+    public void fallsBackToJsonSerDesWhenClassDoesNotMatchCodec() {
+        //same RequestId, but the paxos variant of the message.
+        var proposal = new replicate.paxos.messages.ProposalRequest(new MonotonicId(1, 2), "value".getBytes());
+
+        byte[] bytes = codecs.serialize(RequestId.ProposeRequest, proposal);
+        var decoded = codecs.deserialize(RequestId.ProposeRequest, bytes, replicate.paxos.messages.ProposalRequest.class);
+
+        assertEquals(proposal.getMonotonicId(), decoded.getMonotonicId());
+    }
+
+    @Test
+    public void encodesMessagesWithProtobufCodec() {
+        var protobufCodecs = new MessageCodecs()
+                .register(RequestId.ProposeRequest, ProposalRequest.PROTOBUF_CODEC)
+                .register(RequestId.VersionedSetValueRequest, VersionedSetValueRequest.PROTOBUF_CODEC);
+        var proposal = new ProposalRequest(new MonotonicId(1, 2), 5, "value".getBytes());
+        var request = new VersionedSetValueRequest("key", null, new MonotonicId(3, 1));
+
+        var decodedProposal = protobufCodecs.deserialize(RequestId.ProposeRequest, protobufCodecs.serialize(RequestId.ProposeRequest, proposal), ProposalRequest.class);
+        var decodedRequest = protobufCodecs.deserialize(RequestId.VersionedSetValueRequest, protobufCodecs.serialize(RequestId.VersionedSetValueRequest, request), VersionedSetValueRequest.class);
+
+        assertEquals(proposal.generation, decodedProposal.generation);
+        assertEquals(proposal.index, decodedProposal.index);
+        assertArrayEquals(proposal.proposedValue, decodedProposal.proposedValue);
+        assertEquals("key", decodedRequest.key);
+        assertNull(decodedRequest.value);
+        assertEquals(request.version, decodedRequest.version);
+    }
+
+    @Test
+    public void encodesViewChangeLogWithBothCodecs() {
+        var entry = new ViewStampedReplication.LogEntry(new ExecuteCommandRequest("command".getBytes()), 2);
+        var doViewChange = new DoViewChange(3, Map.of(1, entry), 2, 1, 1);
+
+        for (var codec : new MessageCodecs[]{new MessageCodecs().register(RequestId.DoViewChange, DoViewChange.CODEC),
+                new MessageCodecs().register(RequestId.DoViewChange, DoViewChange.PROTOBUF_CODEC)}) {
+            var decoded = codec.deserialize(RequestId.DoViewChange, codec.serialize(RequestId.DoViewChange, doViewChange), DoViewChange.class);
+
+            assertEquals(3, decoded.viewNumber);
+            assertEquals(2, decoded.normalStatusViewNumber);
+            assertEquals(1, decoded.opNumber);
+            assertEquals(1, decoded.commitNumber);
+            assertEquals(1, decoded.log.size());
+            assertArrayEquals("command".getBytes(), decoded.log.get(1).request.command);
+            assertEquals(2, decoded.log.get(1).getAcks());
+        }
+    }
+
+    @Test
+    public void encodesStoredValuesWithBothCodecs() {
+        var response = new GetValueResponse(new StoredValue("key", "value", 10, 1));
+
+        for (var codec : new MessageCodecs[]{new MessageCodecs().register(RequestId.GetValueResponse, GetValueResponse.CODEC),
+                new MessageCodecs().register(RequestId.GetValueResponse, GetValueResponse.PROTOBUF_CODEC)}) {
+            var decoded = codec.deserialize(RequestId.GetValueResponse, codec.serialize(RequestId.GetValueResponse, response), GetValueResponse.class);
+            var decodedEmpty = codec.deserialize(RequestId.GetValueResponse, codec.serialize(RequestId.GetValueResponse, new GetValueResponse(null)), GetValueResponse.class);
+
+            assertEquals("key", decoded.getValue().getKey());
+            assertEquals("value", decoded.getValue().getValue());
+            assertEquals(10, decoded.getValue().getTimestamp());
+            assertEquals(1, decoded.getValue().getGeneration());
+            assertNull(decodedEmpty.getValue());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package replicate.common;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.net.InProcessTransport;
+import replicate.net.InetAddressAndPort;
+import replicate.net.NIOSocketListener;
+import replicate.net.NettySocketListener;
+import replicate.net.RequestConsumer;
+import replicate.net.RequestListener;
+import replicate.net.SocketClient;
+import replicate.net.TransportType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class NetworkTest {
+    Network network = new Network();
+    RequestListener listener;
+
+    @After
+    public void tearDown() {
+        network.closeAllConnections();
+        if (listener != null) {
+            listener.shudown();
+        }
+    }
+
+    @Test
+    public void reusesConnectionForMessagesToSamePeer() throws IOException {
+        List<RequestOrResponse> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getRequest()), address);
+        listener.start();
+
+        for (int i = 0; i < 5; i++) {
+            network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i));
+        }
+
+        TestUtils.waitUntilTrue(() -> received.size() == 5, "Waiting for all messages", Duration.ofSeconds(2));
+        assertEquals(1, network.getConnectionsCreated());
+        assertEquals(4, network.getConnectionsReused());
+    }
+
+    @Test
+    public void reconnectsWhenPeerRestartedAndClosedPooledConnection() throws Exception {
+        List<RequestOrResponse> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getRequest()), address);
+        listener.start();
+        network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+        TestUtils.waitUntilTrue(() -> received.size() == 1, "Waiting for the first message", Duration.ofSeconds(2));
+
+        listener.shudown();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getRequest()), address);
+        listener.start();
+        //connections used more recently are reused without checking if the peer closed them.
+        Thread.sleep(SocketClient.PROBE_AFTER_IDLE_MS * 2);
+        network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 2));
+
+        TestUtils.waitUntilTrue(() -> received.size() == 2, "Waiting for the message sent after the restart", Duration.ofSeconds(2));
+        assertEquals(2, network.getConnectionsCreated());
+    }
+
+    @Test
+    public void deliversMessagesInOrderThroughNIOTransport() throws IOException {
+        network = new Network(TransportType.NIO);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getCorrelationId()), address);
+        listener.start();
+
+        for (int i = 0; i < 10; i++) {
+            network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i));
+        }
+
+        TestUtils.waitUntilTrue(() -> received.size() == 10, "Waiting for all messages", Duration.ofSeconds(2));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+    }
+
+    @Test
+    public void deliversMessagesInOrderThroughNettyTransport() throws IOException {
+        network = new Network(TransportType.NETTY);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NettySocketListener((RequestConsumer) message -> received.add(message.getCorrelationId()), address);
+        listener.start();
+
+        for (int i = 0; i < 10; i++) {
+            network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i));
+        }
+
+        TestUtils.waitUntilTrue(() -> received.size() == 10, "Waiting for all messages", Duration.ofSeconds(2));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+    }
+
+    @Test
+    public void reportsMessagesNotSentThroughNettyTransport() throws IOException {
+        network = new Network(TransportType.NETTY);
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress(); //nothing listens on it.
+
+        for (int i = 0; i < 3; i++) {
+            network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i), failures::add);
+        }
+
+        TestUtils.waitUntilTrue(() -> failures.size() == 3, "Waiting for the failed connect to be reported", Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void deliversMessagesInOrderInProcess() throws IOException {
+        network = new Network(new Config(null).withTransport(TransportType.IN_PROCESS).withInProcessFrameEncoding());
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        InProcessTransport.register(address, message -> received.add(message.getCorrelationId()));
+        try {
+            for (int i = 0; i < 10; i++) {
+                network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i));
+            }
+
+            TestUtils.waitUntilTrue(() -> received.size() == 10, "Waiting for all messages", Duration.ofSeconds(2));
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+
+            network.dropMessagesTo(address);
+            assertSendFails(address);
+        } finally {
+            InProcessTransport.unregister(address);
+        }
+    }
+
+    @Test
+    public void backsOffAfterFailedConnect() {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        assertSendFails(address);
+        assertSendFails(address);
+
+        assertEquals(1, network.getConnectFailures());
+    }
+
+    private void assertSendFails(InetAddressAndPort address) {
+        try {
+            network.sendOneWay(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+            fail("Expected send to " + address + " to fail");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package replicate.common;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.net.FrameCodec;
+import replicate.net.InetAddressAndPort;
+import replicate.net.NIOSocketListener;
+import replicate.net.RequestConsumer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class PeerSenderTest {
+    Network network = new Network();
+    NIOSocketListener listener;
+    PeerSender peerSender;
+
+    @After
+    public void tearDown() {
+        peerSender.shutdown();
+        network.closeAllConnections();
+        if (listener != null) {
+            listener.shudown();
+        }
+    }
+
+    @Test
+    public void sendsQueuedMessagesInOneBatch() throws IOException {
+        List<RequestOrResponse> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getRequest()), address);
+        listener.start();
+        peerSender = new PeerSender(address, network, 100, 10, Duration.ofMillis(50).toNanos());
+
+        for (int i = 0; i < 10; i++) {
+            peerSender.send(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i), e -> {});
+        }
+        peerSender.start();
+
+        TestUtils.waitUntilTrue(() -> received.size() == 1, "Waiting for the batch", Duration.ofSeconds(2));
+        RequestOrResponse batch = received.get(0);
+        assertEquals(RequestId.BatchRequest, RequestId.valueOf(batch.getRequestId()));
+        List<Integer> correlationIds = FrameCodec.decodeBatch(batch.getMessageBodyJson()).stream().map(RequestOrResponse::getCorrelationId).toList();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), correlationIds);
+        assertEquals(1, peerSender.getBatchesSent());
+        assertEquals(10, peerSender.getMessagesBatched());
+    }
+
+    @Test
+    public void sendsSingleMessageWithoutBatchEnvelope() throws IOException {
+        List<RequestOrResponse> received = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getRequest()), address);
+        listener.start();
+        peerSender = new PeerSender(address, network, 100, 10, 0);
+        peerSender.start();
+
+        peerSender.send(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1), e -> {});
+
+        TestUtils.waitUntilTrue(() -> received.size() == 1, "Waiting for the message", Duration.ofSeconds(2));
+        assertEquals(RequestId.SetValueRequest, RequestId.valueOf(received.get(0).getRequestId()));
+        assertEquals(0, peerSender.getBatchesSent());
+    }
+
+    @Test
+    public void dropsMessagesInBatchAfterNMessages() throws IOException {
+        List<RequestOrResponse> received = new CopyOnWriteArrayList<>();
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message -> received.add(message.getRequest()), address);
+        listener.start();
+        network.dropMessagesAfter(address, 3);
+        peerSender = new PeerSender(address, network, 100, 10, Duration.ofMillis(50).toNanos());
+
+        for (int i = 0; i < 10; i++) {
+            peerSender.send(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i), failures::add);
+        }
+        peerSender.start();
+
+        TestUtils.waitUntilTrue(() -> failures.size() == 7, "Waiting for the messages after the first 3 to be dropped", Duration.ofSeconds(2));
+        TestUtils.waitUntilTrue(() -> received.size() == 3, "Waiting for the first 3 messages", Duration.ofSeconds(2));
+        assertEquals(List.of(0, 1, 2), received.stream().map(RequestOrResponse::getCorrelationId).toList());
+        assertEquals(0, peerSender.getBatchesSent());
+    }
+
+    @Test
+    public void reportsMessageDroppedFromFullQueueBeforeSendReturns() {
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        //not started, so nothing takes messages off the queue.
+        peerSender = new PeerSender(TestUtils.randomLocalAddress(), network, 1);
+
+        peerSender.send(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1), failures::add);
+        assertEquals(0, failures.size());
+
+        peerSender.send(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 2), failures::add);
+        assertEquals(1, failures.size());
+        assertEquals(1, peerSender.getMessagesDropped());
+        assertEquals(1, peerSender.getQueueDepth());
+    }
+}
@@ -0,0 +1,75 @@
+package replicate.common;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class PipelineStageTest {
+    PipelineStage stage = new PipelineStage("test-stage", 4, 16, 8);
+
+    @After
+    public void tearDown() {
+        stage.shutdown();
+    }
+
+    @Test
+    public void runsTasksForEachKeyInSubmitOrder() {
+        stage.start();
+        Map<Integer, List<Integer>> runByKey = new ConcurrentHashMap<>();
+        Map<Integer, String> threadByKey = new ConcurrentHashMap<>();
+        int noOfKeys = 8;
+        int tasksPerKey = 200;
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int key = 0; key < noOfKeys; key++) {
+                int task = i;
+                int k = key;
+                stage.submit(key, () -> {
+                    runByKey.computeIfAbsent(k, x -> new CopyOnWriteArrayList<>()).add(task);
+                    threadByKey.merge(k, Thread.currentThread().getName(), (a, b) -> a.equals(b) ? a : "changed");
+                });
+            }
+        }
+
+        TestUtils.waitUntilTrue(() -> runByKey.values().stream().mapToInt(List::size).sum() == noOfKeys * tasksPerKey, "Waiting for all the tasks to run", Duration.ofSeconds(5));
+        assertEquals(noOfKeys * tasksPerKey, stage.getTasksHandled());
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < tasksPerKey; i++) {
+            expected.add(i);
+        }
+        for (int key = 0; key < noOfKeys; key++) {
+            assertEquals(expected, runByKey.get(key));
+            assertTrue(threadByKey.get(key).startsWith("test-stage-"));
+        }
+    }
+
+    @Test
+    public void keepsOrderOfTasksSubmittedFromStageThreadWhenQueueIsFull() {
+        var stage = new PipelineStage("small-stage", 1, 1, 1);
+        this.stage = stage;
+        stage.start();
+        List<Integer> run = new CopyOnWriteArrayList<>();
+        stage.submit(0, () -> {
+            //the queue has space for one task. Waiting for space for the second would wait forever.
+            stage.submit(0, () -> run.add(1));
+            stage.submit(0, () -> run.add(2));
+            stage.submit(0, () -> run.add(3));
+            run.add(0);
+        });
+
+        TestUtils.waitUntilTrue(() -> run.size() == 4, "Waiting for all the tasks to run", Duration.ofSeconds(5));
+        assertEquals(List.of(0, 1, 2, 3), run);
+        assertEquals(2, stage.getTasksOverflowed());
+
+        stage.submit(0, () -> run.add(4));
+        TestUtils.waitUntilTrue(() -> run.size() == 5, "Waiting for the task submitted after the overflow", Duration.ofSeconds(5));
+        assertEquals(List.of(0, 1, 2, 3, 4), run);
+    }
+}
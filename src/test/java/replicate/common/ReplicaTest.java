@@ -1,5 +1,117 @@
 package replicate.common;
 
+import org.junit.After;
+import org.junit.Test;
+import replicate.net.ClientConnection;
+import replicate.net.FrameCodec;
+import replicate.net.InetAddressAndPort;
+import replicate.vsr.messages.PrepareOK;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
 public class ReplicaTest {
+    TestReplica replica;
+
+    @After
+    public void tearDown() {
+        replica.shutdown();
+    }
+
+    @Test
+    public void skipsMessagesWithUnknownIdWithoutFailingTheRestOfTheBatch() throws IOException {
+        replica = TestUtils.startCluster(List.of("athens"), TestReplica::new).get("athens");
+        replica.handlePeerMessage(message(RequestId.PrepareOK.getId(), new PrepareOK(0, 0, 0, true)));
+        TestUtils.waitUntilTrue(() -> replica.started.getCount() == 0, "Waiting for the first message to be handled", Duration.ofSeconds(5));
+
+        //queued while the update thread is busy, so both are handled in the next batch.
+        replica.handlePeerMessage(message(RequestId.maxId() + 1, new PrepareOK(0, 1, 0, true)));
+        replica.handlePeerMessage(message(RequestId.PrepareOK.getId(), new PrepareOK(0, 2, 0, true)));
+        replica.blocked.countDown();
+
+        TestUtils.waitUntilTrue(() -> replica.handled.size() == 2, "Waiting for the message after the unknown one", Duration.ofSeconds(5));
+        assertEquals(List.of(0, 2), replica.handled);
+    }
+
+    @Test
+    public void skipsPartitionedMessageWhichFailsToDecodeWithoutFailingTheRestOfTheBatch() throws IOException {
+        replica = TestUtils.startCluster(List.of("athens"), (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) ->
+                new TestReplica(name, config.withUpdateQueueLanes(2), clock, clientConnectionAddress, peerConnectionAddress, peers)).get("athens");
+        var malformed = new RequestOrResponse(RequestId.PrepareOK.getId(), "{not json".getBytes(), 1, replica.getPeerConnectionAddress());
+        var valid = new RequestOrResponse(RequestId.PrepareOK.getId(), JsonSerDes.serialize(new PrepareOK(0, 3, 0, true)), 2, replica.getPeerConnectionAddress());
+        var batch = new RequestOrResponse(RequestId.BatchRequest.getId(), FrameCodec.encodeBatch(List.of(malformed, valid)), -1, replica.getPeerConnectionAddress());
+
+        replica.handlePeerMessage(new Message<>(batch, new Message.Header(batch.getFromAddress(), batch.getCorrelationId(), RequestId.BatchRequest)));
+
+        TestUtils.waitUntilTrue(() -> replica.handled.size() == 1, "Waiting for the message after the malformed one", Duration.ofSeconds(5));
+        assertEquals(List.of(3), replica.handled);
+    }
+
+    @Test
+    public void dropsClientRequestsWithoutWritingToUnwritableConnection() throws IOException {
+        replica = TestUtils.startCluster(List.of("athens"), TestReplica::new).get("athens");
+        List<RequestOrResponse> written = new CopyOnWriteArrayList<>();
+        ClientConnection unwritable = new ClientConnection() {
+            @Override
+            public void write(RequestOrResponse response) {
+                written.add(response);
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean isWritable() {
+                return false;
+            }
+        };
+        var request = new RequestOrResponse(RequestId.PrepareOK.getId(), JsonSerDes.serialize(new PrepareOK(0, 1, 0, true)), 1);
+
+        replica.handleClientRequest(new Message<>(request, new Message.Header(null, 1, RequestId.PrepareOK), unwritable));
+
+        assertEquals(1, replica.getClientRequestsShed());
+        assertEquals(List.of(), written);
+        assertEquals(List.of(), replica.handled);
+    }
+
+    private Message<RequestOrResponse> message(int requestId, PrepareOK body) {
+        var request = new RequestOrResponse(requestId, JsonSerDes.serialize(body), 1, replica.getPeerConnectionAddress());
+        return new Message<>(request, new Message.Header(request.getFromAddress(), request.getCorrelationId(), RequestId.valueOf(requestId)));
+    }
+
+    static class TestReplica extends Replica {
+        final List<Integer> handled = new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+
+        TestReplica(String name, Config config, SystemClock clock, InetAddressAndPort clientConnectionAddress, InetAddressAndPort peerConnectionAddress, List<InetAddressAndPort> peerAddresses) throws IOException {
+            super(name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses);
+        }
+
+        @Override
+        protected void registerHandlers() {
+            handlesMessage(RequestId.PrepareOK, this::handlePrepareOK, PrepareOK.class);
+            //used only with Config.withUpdateQueueLanes.
+            partitionsByKey(RequestId.PrepareOK, PrepareOK.class, prepareOK -> prepareOK.opNumber);
+        }
 
-}
\ No newline at end of file
+        //the first message blocks the update thread till the test releases it.
+        private void handlePrepareOK(Message<PrepareOK> message) {
+            if (message.getRequest().opNumber == 0) {
+                started.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            handled.add(message.getRequest().opNumber);
+        }
+    }
+}
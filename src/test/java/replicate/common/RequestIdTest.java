@@ -0,0 +1,23 @@
+package replicate.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RequestIdTest {
+
+    @Test
+    public void looksUpEveryRequestIdByItsId() {
+        for (RequestId requestId : RequestId.values()) {
+            assertEquals(requestId, RequestId.valueOf(requestId.getId()));
+        }
+    }
+
+    @Test
+    public void returnsNullForIdsNotKnownToThisVersion() {
+        assertNull(RequestId.valueOf(-1));
+        assertNull(RequestId.valueOf(RequestId.maxId() + 1));
+        assertNull(RequestId.valueOf(Integer.MAX_VALUE));
+    }
+}
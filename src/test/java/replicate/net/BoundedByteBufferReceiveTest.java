@@ -0,0 +1,73 @@
+package replicate.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BoundedByteBufferReceiveTest {
+    BufferPool pool = new BufferPool(64, 8);
+
+    @Test
+    public void readsSeveralFramesFromOneRead() throws IOException {
+        BoundedByteBufferReceive receive = new BoundedByteBufferReceive(pool, 1024);
+        List<String> frames = new ArrayList<>();
+
+        receive.readFrom(channel(frames("one", "two", "three")), frame -> frames.add(asString(frame)));
+
+        assertEquals(List.of("one", "two", "three"), frames);
+    }
+
+    @Test
+    public void readsFramesLargerThanPooledChunk() throws IOException {
+        BoundedByteBufferReceive receive = new BoundedByteBufferReceive(pool, 1024);
+        List<String> frames = new ArrayList<>();
+        String large = "x".repeat(200);
+        ReadableByteChannel channel = channel(frames(large, "small"));
+
+        while (frames.size() < 2) {
+            receive.readFrom(channel, frame -> frames.add(asString(frame)));
+        }
+
+        assertEquals(List.of(large, "small"), frames);
+    }
+
+    @Test
+    public void rejectsFramesLargerThanMaxFrameSize() {
+        BoundedByteBufferReceive receive = new BoundedByteBufferReceive(pool, 16);
+        try {
+            receive.readFrom(channel(frames("x".repeat(17))), frame -> fail("Frame should be rejected"));
+            fail("Expected oversized frame to fail the read");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    private byte[] frames(String... contents) {
+        ByteBuffer buffer = ByteBuffer.allocate(Arrays.stream(contents).mapToInt(c -> 4 + c.length()).sum());
+        for (String content : contents) {
+            buffer.putInt(content.length());
+            buffer.put(content.getBytes());
+        }
+        return buffer.array();
+    }
+
+    private ReadableByteChannel channel(byte[] bytes) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    private String asString(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return new String(bytes);
+    }
+}
@@ -0,0 +1,66 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.RequestId;
+import replicate.common.RequestOrResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameCodecTest {
+
+    @Test
+    public void roundTripsHeaderAndRawBody() throws IOException {
+        var fromAddress = InetAddressAndPort.create("127.0.0.1", 9000);
+        var message = new RequestOrResponse(3, RequestId.ProposeRequest.getId(), "body".getBytes(), 42, fromAddress).setError();
+
+        ByteBuffer frame = writeFrame(message);
+        int size = frame.getInt();
+        assertEquals(frame.remaining(), size);
+        RequestOrResponse decoded = FrameCodec.decode(frame);
+
+        assertEquals(message, decoded);
+        assertTrue(decoded.isError());
+    }
+
+    @Test
+    public void encodesMessagesWithoutFromAddress() throws IOException {
+        var message = new RequestOrResponse(RequestId.SetValueResponse.getId(), "ok".getBytes(), 7);
+
+        ByteBuffer frame = writeFrame(message);
+        frame.getInt();
+        RequestOrResponse decoded = FrameCodec.decode(frame);
+
+        assertEquals(message, decoded);
+        assertNull(decoded.getFromAddress());
+        assertFalse(decoded.isError());
+    }
+
+    @Test
+    public void roundTripsBatchOfMessagesInOrder() {
+        var fromAddress = InetAddressAndPort.create("127.0.0.1", 9000);
+        var messages = List.of(
+                new RequestOrResponse(RequestId.ProposeRequest.getId(), "first".getBytes(), 1, fromAddress),
+                new RequestOrResponse(RequestId.Commit.getId(), null, 2, fromAddress),
+                new RequestOrResponse(RequestId.HeartBeatRequest.getId(), "third".getBytes(), 3, fromAddress).setError());
+
+        List<RequestOrResponse> decoded = FrameCodec.decodeBatch(FrameCodec.encodeBatch(messages));
+
+        assertEquals(3, decoded.size());
+        assertEquals(messages.get(0), decoded.get(0));
+        assertArrayEquals(new byte[0], decoded.get(1).getMessageBodyJson());
+        assertEquals(messages.get(2), decoded.get(2));
+        assertTrue(decoded.get(2).isError());
+    }
+
+    private ByteBuffer writeFrame(RequestOrResponse message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FrameCodec.writeFrame(new DataOutputStream(bytes), message);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
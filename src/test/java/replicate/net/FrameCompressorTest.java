@@ -0,0 +1,109 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.RequestId;
+import replicate.common.RequestOrResponse;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameCompressorTest {
+    FrameCompressor compressor = new FrameCompressor(256);
+
+    @Test
+    public void compressesBodiesAboveThreshold() {
+        var fromAddress = InetAddressAndPort.create("127.0.0.1", 9000);
+        byte[] body = "log entry ".repeat(100).getBytes();
+        var message = new RequestOrResponse(2, RequestId.StartView.getId(), body, 5, fromAddress);
+
+        RequestOrResponse compressed = compressor.compress(message);
+        //the flag survives the trip through the frame header.
+        RequestOrResponse received = FrameCodec.decode(frame(compressed));
+
+        assertTrue(compressed.isCompressed());
+        assertTrue(compressed.getMessageBodyJson().length < body.length);
+        assertTrue(received.isCompressed());
+        assertEquals(message, compressor.decompress(received));
+        assertEquals(1, compressor.getFramesCompressed());
+        assertEquals(1, compressor.getFramesDecompressed());
+        assertTrue(compressor.getCompressionRatio() > 1.0);
+    }
+
+    @Test
+    public void leavesSmallBodiesUncompressed() {
+        var message = new RequestOrResponse(RequestId.Prepare.getId(), "small".getBytes(), 1);
+
+        assertSame(message, compressor.compress(message));
+        assertEquals(0, compressor.getFramesCompressed());
+    }
+
+    @Test
+    public void leavesIncompressibleBodiesUncompressed() {
+        byte[] body = new byte[1024];
+        new Random(1).nextBytes(body);
+        var message = new RequestOrResponse(RequestId.StartView.getId(), body, 1);
+
+        RequestOrResponse result = compressor.compress(message);
+
+        assertFalse(result.isCompressed());
+        assertArrayEquals(body, result.getMessageBodyJson());
+    }
+
+    @Test
+    public void doesNotCompressWhenDisabled() {
+        var disabled = new FrameCompressor(0);
+        var message = new RequestOrResponse(RequestId.StartView.getId(), "log entry ".repeat(100).getBytes(), 1);
+
+        assertSame(message, disabled.compress(message));
+    }
+
+    @Test
+    public void rejectsUncompressedLengthAboveMaxFrameSize() {
+        var compressor = new FrameCompressor(256, 1024);
+        var message = new RequestOrResponse(RequestId.StartView.getId(), ByteBuffer.allocate(8).putInt(1025).array(), 1).setCompressed();
+
+        try {
+            compressor.decompress(message);
+            fail("Expect an exception, as the length is above the max frame size");
+        } catch (NetworkException e) {
+            assertTrue(e.getMessage().contains("1025"));
+        }
+    }
+
+    @Test
+    public void rejectsNonPositiveUncompressedLength() {
+        for (int length : new int[]{0, -1, Integer.MIN_VALUE}) {
+            var message = new RequestOrResponse(RequestId.StartView.getId(), ByteBuffer.allocate(8).putInt(length).array(), 1).setCompressed();
+
+            try {
+                compressor.decompress(message);
+                fail("Expect an exception for uncompressed length " + length);
+            } catch (NetworkException e) {
+
+            }
+        }
+    }
+
+    @Test
+    public void rejectsBodyTooShortForUncompressedLength() {
+        var message = new RequestOrResponse(RequestId.StartView.getId(), new byte[]{0, 1}, 1).setCompressed();
+
+        try {
+            compressor.decompress(message);
+            fail("Expect an exception, as the body has no uncompressed length");
+        } catch (NetworkException e) {
+
+        }
+    }
+
+    private byte[] frame(RequestOrResponse message) {
+        byte[] header = FrameCodec.encodeHeader(message);
+        byte[] body = FrameCodec.body(message);
+        byte[] frame = new byte[header.length + body.length];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(body, 0, frame, header.length, body.length);
+        return frame;
+    }
+}
@@ -0,0 +1,66 @@
+package replicate.net;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.common.RequestId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class NIOClientTransportTest {
+    NIOClientTransport transport;
+
+    @After
+    public void tearDown() {
+        transport.closeAll();
+    }
+
+    @Test
+    public void reportsMessagesDroppedForUnreachablePeerToSender() throws IOException {
+        transport = new NIOClientTransport();
+        transport.start();
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+
+        transport.sendOneway(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1), failures::add);
+
+        TestUtils.waitUntilTrue(() -> failures.size() == 1, "Waiting for the dropped message to be reported", Duration.ofSeconds(5));
+        assertEquals(1, transport.getMessagesDropped());
+    }
+
+    @Test
+    public void reportsMessagesQueuedForClosedConnectionToSender() throws IOException {
+        transport = new NIOClientTransport();
+        List<IOException> failures = new CopyOnWriteArrayList<>();
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        //queued before the I/O thread starts, so the connection is closed before it is flushed.
+        transport.sendOneway(address, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1), failures::add);
+        transport.close(address);
+
+        transport.start();
+
+        TestUtils.waitUntilTrue(() -> failures.size() == 1, "Waiting for the dropped message to be reported", Duration.ofSeconds(5));
+        assertEquals(1, transport.getMessagesDropped());
+    }
+
+    @Test
+    public void sendsPartlyWrittenFrameFromItsStartAfterDisconnect() throws IOException {
+        transport = new NIOClientTransport();
+        var peerChannel = transport.new PeerChannel(TestUtils.randomLocalAddress());
+        ByteBuffer frame = ByteBuffer.wrap(new byte[]{0, 0, 0, 4, 1, 2, 3, 4});
+        peerChannel.enqueue(new NIOClientTransport.OutboundFrame(frame, e -> {}));
+        frame.position(5); //part of the frame went out before the connection closed.
+
+        peerChannel.disconnect();
+
+        assertEquals(0, frame.position());
+        assertEquals(8, frame.remaining());
+    }
+}
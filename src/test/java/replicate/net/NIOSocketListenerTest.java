@@ -0,0 +1,110 @@
+package replicate.net;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.common.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public class NIOSocketListenerTest {
+    NIOSocketListener listener;
+
+    @After
+    public void tearDown() {
+        if (listener != null) {
+            listener.shudown();
+        }
+    }
+
+    @Test
+    public void connectionIsNotWritableAboveHighWatermarkTillDrained() throws IOException {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        byte[] largeResponse = new byte[1024 * 1024];
+        Config config = new Config(null).withOutboundWatermarks(64 * 1024, 256 * 1024);
+        listener = new NIOSocketListener((RequestConsumer) message -> {
+            for (int i = 0; i < 20; i++) {
+                message.getClientConnection().write(new RequestOrResponse(RequestId.SetValueResponse.getId(), largeResponse, i));
+            }
+        }, address, config);
+        listener.start();
+
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream os = new DataOutputStream(socket.getOutputStream());
+            FrameCodec.writeFrame(os, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+            os.flush();
+
+            TestUtils.waitUntilTrue(() -> listener.getUnwritableConnections() == 1, "Waiting for connection to go above high watermark", Duration.ofSeconds(5));
+
+            DataInputStream is = new DataInputStream(socket.getInputStream());
+            for (int i = 0; i < 20; i++) {
+                is.readFully(new byte[is.readInt()]);
+            }
+            TestUtils.waitUntilTrue(() -> listener.getUnwritableConnections() == 0 && listener.getQueuedBytes() == 0, "Waiting for connection to be drained", Duration.ofSeconds(5));
+        }
+    }
+
+    @Test
+    public void doesNotQueueResponsesOnClosedConnection() throws IOException {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        List<Integer> freeBuffers = new CopyOnWriteArrayList<>();
+        listener = new NIOSocketListener((RequestConsumer) message -> {
+            ClientConnection connection = message.getClientConnection();
+            //the ring keeps its buffer for more responses, and returns it to the pool on close.
+            connection.write(new RequestOrResponse(RequestId.SetValueResponse.getId(), "".getBytes(), 1));
+            connection.close();
+            freeBuffers.add(listener.getBufferPool().getNoOfFreeBuffers());
+            connection.write(new RequestOrResponse(RequestId.SetValueResponse.getId(), "".getBytes(), 2));
+            freeBuffers.add(listener.getBufferPool().getNoOfFreeBuffers());
+        }, address);
+        listener.start();
+
+        try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+            DataOutputStream os = new DataOutputStream(socket.getOutputStream());
+            FrameCodec.writeFrame(os, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+            os.flush();
+
+            TestUtils.waitUntilTrue(() -> freeBuffers.size() == 2, "Waiting for the response written after close", Duration.ofSeconds(5));
+            assertEquals(freeBuffers.get(0), freeBuffers.get(1));
+        }
+    }
+
+    @Test
+    public void spreadsConnectionsAcrossSelectorThreads() throws IOException {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        listener = new NIOSocketListener((RequestConsumer) message ->
+                message.getClientConnection().write(new RequestOrResponse(RequestId.SetValueResponse.getId(), "".getBytes(), message.getRequest().getCorrelationId())),
+                address, new Config(null).withSelectorThreads(2));
+        listener.start();
+
+        Socket[] sockets = new Socket[4];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket(address.getAddress(), address.getPort());
+                DataOutputStream os = new DataOutputStream(sockets[i].getOutputStream());
+                FrameCodec.writeFrame(os, new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), i));
+                os.flush();
+            }
+            for (int i = 0; i < sockets.length; i++) {
+                DataInputStream is = new DataInputStream(sockets[i].getInputStream());
+                byte[] frame = new byte[is.readInt()];
+                is.readFully(frame);
+                assertEquals(i, (int) FrameCodec.decode(frame).getCorrelationId());
+            }
+            assertEquals(List.of(2L, 2L), listener.getConnectionsPerSelectorThread());
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package replicate.net;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.common.TestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrderedDispatcherTest {
+    OrderedDispatcher dispatcher = new OrderedDispatcher("test-dispatcher", 4);
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void runsTasksOfEachSerialExecutorInSubmissionOrder() {
+        Executor connection1 = dispatcher.newSerialExecutor();
+        Executor connection2 = dispatcher.newSerialExecutor();
+        List<Integer> connection1Requests = new CopyOnWriteArrayList<>();
+        List<Integer> connection2Requests = new CopyOnWriteArrayList<>();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int requestNo = i;
+            connection1.execute(() -> connection1Requests.add(requestNo));
+            connection2.execute(() -> connection2Requests.add(requestNo));
+            expected.add(i);
+        }
+
+        TestUtils.waitUntilTrue(() -> connection1Requests.size() == 1000 && connection2Requests.size() == 1000,
+                "Waiting for all requests to be dispatched", Duration.ofSeconds(5));
+        assertEquals(expected, connection1Requests);
+        assertEquals(expected, connection2Requests);
+        assertEquals(2000, dispatcher.getDispatchedRequests());
+    }
+
+    @Test
+    public void namesEachThreadWithItsIndex() {
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        CountDownLatch allRunning = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            //each task waits for the others, so they all run on different threads.
+            dispatcher.newSerialExecutor().execute(() -> {
+                threadNames.add(Thread.currentThread().getName());
+                allRunning.countDown();
+                try {
+                    allRunning.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        TestUtils.waitUntilTrue(() -> threadNames.size() == 4, "Waiting for tasks to run on all threads", Duration.ofSeconds(5));
+        assertEquals(Set.of("test-dispatcher-0", "test-dispatcher-1", "test-dispatcher-2", "test-dispatcher-3"), threadNames);
+    }
+}
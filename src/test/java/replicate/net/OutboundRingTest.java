@@ -0,0 +1,73 @@
+package replicate.net;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.Assert.*;
+
+public class OutboundRingTest {
+
+    @Test
+    public void writesFramesSpanningPooledBuffersInOrder() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+        OutboundRing ring = new OutboundRing(pool);
+
+        assertTrue(ring.appendFrame("first message".getBytes()));
+        assertFalse(ring.appendFrame("second message".getBytes()));
+        assertEquals(4 + 13 + 4 + 14, ring.queuedBytes());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ring.writeTo(gathering(Channels.newChannel(out))));
+
+        ByteBuffer written = ByteBuffer.wrap(out.toByteArray());
+        assertEquals("first message", readFrame(written));
+        assertEquals("second message", readFrame(written));
+        assertEquals(0, ring.queuedBytes());
+        assertTrue(pool.getNoOfFreeBuffers() > 0);
+    }
+
+    private String readFrame(ByteBuffer buffer) {
+        byte[] frame = new byte[buffer.getInt()];
+        buffer.get(frame);
+        return new String(frame);
+    }
+
+    private GatheringByteChannel gathering(WritableByteChannel channel) {
+        return new GatheringByteChannel() {
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                long written = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    written += channel.write(srcs[i]);
+                }
+                return written;
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs) throws IOException {
+                return write(srcs, 0, srcs.length);
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return channel.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
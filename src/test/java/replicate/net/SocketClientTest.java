@@ -0,0 +1,78 @@
+package replicate.net;
+
+import org.junit.Test;
+import replicate.common.RequestId;
+import replicate.common.RequestOrResponse;
+import replicate.common.TestUtils;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketClientTest {
+
+    @Test
+    public void connectionClosedByPeerIsNotHealthy() throws Exception {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(address.getAddress(), address.getPort()));
+            SocketClient<?> client = new SocketClient<>(address);
+            try (Socket accepted = serverSocket.accept()) {
+                client.sendOneway(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+                var in = new DataInputStream(accepted.getInputStream());
+                in.readFully(new byte[in.readInt()]);
+
+                assertTrue(client.isHealthy());
+            }
+            TestUtils.waitUntilTrue(() -> !client.isHealthy(), "Waiting for the closed connection to be detected", Duration.ofSeconds(5));
+            assertFalse(client.isClosed());
+            client.close();
+        }
+    }
+
+    @Test
+    public void sendsFromInterruptedThread() throws Exception {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(address.getAddress(), address.getPort()));
+            Thread.currentThread().interrupt();
+            try {
+                SocketClient<?> client = new SocketClient<>(address);
+                try (Socket accepted = serverSocket.accept()) {
+                    client.sendOneway(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+                    var in = new DataInputStream(accepted.getInputStream());
+                    in.readFully(new byte[in.readInt()]);
+
+                    assertTrue(client.isHealthy());
+                    assertTrue(Thread.currentThread().isInterrupted());
+                }
+                client.close();
+            } finally {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    @Test
+    public void recentlyUsedConnectionIsNotProbed() throws Exception {
+        InetAddressAndPort address = TestUtils.randomLocalAddress();
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(address.getAddress(), address.getPort()));
+            SocketClient<?> client = new SocketClient<>(address);
+            try (Socket accepted = serverSocket.accept()) {
+                //a byte no request waits for makes a probed connection unhealthy.
+                accepted.getOutputStream().write(1);
+                client.sendOneway(new RequestOrResponse(RequestId.SetValueRequest.getId(), "".getBytes(), 1));
+
+                assertTrue(client.isHealthy());
+                TestUtils.waitUntilTrue(() -> !client.isHealthy(), "Waiting for the idle connection to be probed", Duration.ofSeconds(5));
+            }
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package replicate.net.requestwaitinglist;
+
+import org.junit.Test;
+import replicate.net.InetAddressAndPort;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class IntRequestWaitingListTest {
+    private static final long START = 1_000_000_000l;
+
+    @Test
+    public void invokesCallbacksForResponsesInAnyOrder() {
+        var list = new IntRequestWaitingList<String>(new TestClock(START), Duration.ofSeconds(10), Duration.ofMillis(10), 64, false);
+        List<Integer> keys = new ArrayList<>();
+        List<RecordingCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int key = i % 2 == 0 ? i : -i * 7919; //sequential and scattered ids, to collide in the table.
+            keys.add(key);
+            RecordingCallback callback = new RecordingCallback();
+            callbacks.add(callback);
+            list.add(key, callback);
+        }
+        assertEquals(1000, list.getPendingRequests());
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(7));
+        for (int i : order) {
+            list.handleResponse(keys.get(i), "response" + i);
+        }
+
+        for (int i = 0; i < callbacks.size(); i++) {
+            assertEquals("response" + i, callbacks.get(i).response);
+        }
+        assertEquals(0, list.getPendingRequests());
+    }
+
+    @Test
+    public void ignoresResponsesForUnknownOrHandledRequests() {
+        var list = new IntRequestWaitingList<String>(new TestClock(START), Duration.ofSeconds(10), Duration.ofMillis(10), 64, false);
+        RecordingCallback callback = new RecordingCallback();
+        list.add(1, callback);
+
+        list.handleResponse(2, "unknown");
+        list.handleResponse(1, "first");
+        list.handleResponse(1, "second");
+        list.handleError(1, new RuntimeException());
+
+        assertEquals("first", callback.response);
+        assertEquals(1, callback.responses);
+        assertNull(callback.error);
+    }
+
+    @Test
+    public void expiresRequestsAfterTheirOwnTimeout() {
+        TestClock clock = new TestClock(START);
+        var list = new IntRequestWaitingList<String>(clock, Duration.ofSeconds(1), Duration.ofMillis(10), 64, false);
+        RecordingCallback shortTimeout = new RecordingCallback();
+        RecordingCallback defaultTimeout = new RecordingCallback();
+        list.add(1, shortTimeout, Duration.ofMillis(100));
+        list.add(2, defaultTimeout);
+
+        advance(clock, 90);
+        list.expire();
+        assertNull(shortTimeout.error);
+
+        advance(clock, 20);
+        list.expire();
+        assertTrue(shortTimeout.error instanceof TimeoutException);
+        assertNull(defaultTimeout.error);
+        assertEquals(1, list.getPendingRequests());
+
+        advance(clock, 900);
+        list.expire();
+        assertTrue(defaultTimeout.error instanceof TimeoutException);
+        assertEquals(2, list.getRequestsExpired());
+        assertEquals(0, list.getPendingRequests());
+    }
+
+    @Test
+    public void keepsRequestsDueInLaterTurnsOfTheWheel() {
+        TestClock clock = new TestClock(START);
+        //the wheel turns every 80ms, so a 200ms timeout shares its bucket with earlier ticks.
+        var list = new IntRequestWaitingList<String>(clock, Duration.ofSeconds(1), Duration.ofMillis(10), 8, false);
+        RecordingCallback callback = new RecordingCallback();
+        list.add(1, callback, Duration.ofMillis(200));
+
+        for (int elapsed = 10; elapsed < 200; elapsed += 10) {
+            advance(clock, 10);
+            list.expire();
+            assertNull("expired after " + elapsed + "ms", callback.error);
+        }
+        advance(clock, 10);
+        list.expire();
+        assertTrue(callback.error instanceof TimeoutException);
+    }
+
+    @Test
+    public void responseRemovesRequestFromTheWheel() {
+        TestClock clock = new TestClock(START);
+        var list = new IntRequestWaitingList<String>(clock, Duration.ofMillis(100), Duration.ofMillis(10), 64, false);
+        RecordingCallback callback = new RecordingCallback();
+        list.add(1, callback);
+        list.handleResponse(1, "response");
+
+        advance(clock, 1000);
+        list.expire();
+
+        assertEquals("response", callback.response);
+        assertNull(callback.error);
+        assertEquals(0, list.getRequestsExpired());
+    }
+
+    private static void advance(TestClock clock, long millis) {
+        clock.nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    static class RecordingCallback implements RequestCallback<String> {
+        String response;
+        int responses;
+        Exception error;
+
+        @Override
+        public void onResponse(String r, InetAddressAndPort fromNode) {
+            response = r;
+            responses++;
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error = e;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.util.Arrays;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PaxosKVStoreTest extends ClusterTest<PaxosKVStore> {
 
@@ -51,4 +52,47 @@ public class PaxosKVStoreTest extends ClusterTest<PaxosKVStore> {
         var getResponse = client.sendAndReceive(new GetValueRequest("title"), address, GetValueResponse.class);
         assertEquals(Optional.of("Nicroservices"), getResponse.value);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void handlesPaxosMessagesForDifferentKeysOnLanes() throws IOException {
+        nodes.values().forEach(PaxosKVStore::shutdown);
+        super.nodes = TestUtils.startCluster( Arrays.asList("athens", "byzantium", "cyrene"),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new PaxosKVStore(name, clock, config.withUpdateQueueLanes(4), clientConnectionAddress, peerConnectionAddress, peers));
+
+        var client = new NetworkClient();
+        var address = nodes.get("athens").getClientConnectionAddress();
+        for (int i = 0; i < 10; i++) {
+            var response = client.sendAndReceive(new SetValueRequest("title" + i, "Microservices" + i), address, SetValueResponse.class);
+            assertEquals("Microservices" + i, response.result);
+        }
+        for (int i = 0; i < 10; i++) {
+            var getResponse = client.sendAndReceive(new GetValueRequest("title" + i), nodes.get("cyrene").getClientConnectionAddress(), GetValueResponse.class);
+            assertEquals(Optional.of("Microservices" + i), getResponse.value);
+        }
+        assertEquals(10, nodes.get("byzantium").kv.size());
+        var lanes = nodes.get("byzantium").getUpdateQueueLanes();
+        assertEquals(4, lanes.size());
+        assertTrue(lanes.stream().filter(lane -> lane.getRequestsHandled() > 0).count() > 1);
+    }
+
+    @Test
+    public void decodesAndEncodesMessagesInPipelineStages() throws IOException {
+        nodes.values().forEach(PaxosKVStore::shutdown);
+        super.nodes = TestUtils.startCluster( Arrays.asList("athens", "byzantium", "cyrene"),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new PaxosKVStore(name, clock, config.withPipelineStages(2, 2).withUpdateQueueLanes(2), clientConnectionAddress, peerConnectionAddress, peers));
+
+        var client = new NetworkClient();
+        var address = nodes.get("athens").getClientConnectionAddress();
+        for (int i = 0; i < 10; i++) {
+            var response = client.sendAndReceive(new SetValueRequest("title" + i, "Microservices" + i), address, SetValueResponse.class);
+            assertEquals("Microservices" + i, response.result);
+        }
+        for (int i = 0; i < 10; i++) {
+            var getResponse = client.sendAndReceive(new GetValueRequest("title" + i), nodes.get("cyrene").getClientConnectionAddress(), GetValueResponse.class);
+            assertEquals(Optional.of("Microservices" + i), getResponse.value);
+        }
+        var athens = nodes.get("athens");
+        assertTrue(athens.getDecodeStageTasksHandled() > 0);
+        assertTrue(athens.getEncodeStageTasksHandled() > 0);
+    }
+}
@@ -5,8 +5,11 @@ import org.junit.Test;
 import replicate.common.ClusterTest;
 import replicate.common.NetworkClient;
 import replicate.common.TestUtils;
+import replicate.net.InProcessTransport;
+import replicate.net.TransportType;
 import replicate.paxos.messages.GetValueResponse;
 import replicate.quorum.messages.GetValueRequest;
+import replicate.singularupdatequeue.WaitStrategy;
 import replicate.twophaseexecution.CompareAndSwap;
 import replicate.twophaseexecution.messages.ExecuteCommandRequest;
 import replicate.twophaseexecution.messages.ExecuteCommandResponse;
@@ -34,6 +37,30 @@ public class PaxosLogTest extends ClusterTest<PaxosLog> {
         assertEquals(Optional.of("Microservices"), setValueResponse.getResponse());
     }
 
+    @Test
+    public void deliversMessagesToItselfWithoutTheNetwork() throws IOException {
+        var networkClient = new NetworkClient();
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        var setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command), nodes.get("athens").getClientConnectionAddress(), ExecuteCommandResponse.class);
+        assertEquals(Optional.of("Microservices"), setValueResponse.getResponse());
+
+        //prepare, propose and commit, and the responses to each.
+        assertTrue(nodes.get("athens").getLocalDeliveries() >= 6);
+    }
+
+    @Test
+    public void sendsMessagesToItselfThroughTheNetworkWhenFaultsAreInjected() throws IOException {
+        var athens = nodes.get("athens");
+        athens.dropAfterNMessagesTo(athens, 1000); //injects a fault which never drops a message here.
+        var networkClient = new NetworkClient();
+        byte[] command = new SetValueCommand("title", "Microservices").serialize();
+        var setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command), athens.getClientConnectionAddress(), ExecuteCommandResponse.class);
+        assertEquals(Optional.of("Microservices"), setValueResponse.getResponse());
+
+        assertEquals(0, athens.getLocalDeliveries());
+        assertEquals(0, athens.getRequestWaitingList().getRequestsReplaced());
+    }
+
     @Test
     public void singleValueNullPaxosGetTest() throws IOException {
         var networkClient = new NetworkClient();
@@ -192,4 +219,38 @@ public class PaxosLogTest extends ClusterTest<PaxosLog> {
 
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void executesCommandsWithInProcessTransport() throws IOException {
+        nodes.values().forEach(PaxosLog::shutdown);
+        super.nodes = TestUtils.startCluster( Arrays.asList("athens", "byzantium", "cyrene"),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new PaxosLog(name, clock, config.withTransport(TransportType.IN_PROCESS).withInProcessFrameEncoding(), clientConnectionAddress, peerConnectionAddress, peers));
+
+        var networkClient = new NetworkClient();
+        for (int i = 0; i < 5; i++) {
+            byte[] command = new SetValueCommand("title" + i, "Microservices" + i).serialize();
+            var setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command), nodes.get("byzantium").getClientConnectionAddress(), ExecuteCommandResponse.class);
+            assertEquals(Optional.of("Microservices" + i), setValueResponse.getResponse());
+        }
+        assertEquals(5, nodes.get("cyrene").paxosLog.size());
+        assertTrue(((InProcessTransport) nodes.get("byzantium").getPeerTransport()).getMessagesDelivered() > 0);
+    }
+
+    @Test
+    public void executesCommandsWithRingBufferUpdateQueue() throws IOException {
+        nodes.values().forEach(PaxosLog::shutdown);
+        super.nodes = TestUtils.startCluster( Arrays.asList("athens", "byzantium", "cyrene"),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peers) -> new PaxosLog(name, clock, config.withRingBufferUpdateQueue(WaitStrategy.PARK), clientConnectionAddress, peerConnectionAddress, peers));
+
+        var networkClient = new NetworkClient();
+        for (int i = 0; i < 5; i++) {
+            byte[] command = new SetValueCommand("title" + i, "Microservices" + i).serialize();
+            var setValueResponse = networkClient.sendAndReceive(new ExecuteCommandRequest(command), nodes.get("athens").getClientConnectionAddress(), ExecuteCommandResponse.class);
+            assertEquals(Optional.of("Microservices" + i), setValueResponse.getResponse());
+        }
+        assertEquals(5, nodes.get("cyrene").paxosLog.size());
+        var updateQueue = nodes.get("athens").getUpdateQueue();
+        assertTrue(updateQueue.usesRingBuffer());
+        assertTrue(updateQueue.getRequestsHandled() > 0);
+    }
+}
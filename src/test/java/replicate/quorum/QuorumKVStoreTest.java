@@ -7,9 +7,16 @@ import replicate.net.InetAddressAndPort;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class QuorumKVStoreTest extends ClusterTest<QuorumKVStore> {
     QuorumKVStore athens;
@@ -212,4 +219,38 @@ public class QuorumKVStoreTest extends ClusterTest<QuorumKVStore> {
         response = bob.getValue(cyrene.getClientConnectionAddress(), "title");
         assertEquals("Nitroservices", response);
     }
-}
\ No newline at end of file
+
+    //Sequential requests leave at most one message queued for a peer at a time.
+    //Concurrent clients queue several, which are sent together.
+    @Test
+    public void writesFromConcurrentClientsWithBatchedPeerMessages() throws Exception {
+        nodes.values().forEach(QuorumKVStore::shutdown);
+        this.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                (name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses) -> new QuorumKVStore(name, config.withPeerOutboundQueueSize(100).withMaxBatchSize(16).withMaxBatchWaitTime(Duration.ofMillis(100)), clock, clientConnectionAddress, peerConnectionAddress, peerAddresses));
+        athens = nodes.get("athens");
+
+        int noOfClients = 8;
+        ExecutorService clients = Executors.newFixedThreadPool(noOfClients);
+        List<Future<String>> responses = new ArrayList<>();
+        for (int i = 0; i < noOfClients; i++) {
+            String key = "title" + i;
+            responses.add(clients.submit(() -> new KVClient().setValue(athens.getClientConnectionAddress(), key, "Microservices")));
+        }
+        for (Future<String> response : responses) {
+            assertEquals("Success", response.get(5, TimeUnit.SECONDS));
+        }
+        clients.shutdown();
+
+        TestUtils.waitUntilTrue(() -> nodes.values().stream().allMatch(node -> {
+            for (int i = 0; i < noOfClients; i++) {
+                if (!"Microservices".equals(node.get("title" + i).getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }), "Waiting for all the replicas to store the values", Duration.ofSeconds(5));
+        long batchesSent = athens.getOutboundBatchesSent(nodes.get("byzantium").getPeerConnectionAddress())
+                + athens.getOutboundBatchesSent(nodes.get("cyrene").getPeerConnectionAddress());
+        assertTrue(batchesSent > 0);
+    }
+}
@@ -0,0 +1,74 @@
+package replicate.singularupdatequeue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchingActorLikeSingularUpdateQueueTest {
+
+    @Test
+    public void handlesRequestsQueuedWhileBusyInBatchesOfAtMostMaxBatchSize() throws Exception {
+        CountDownLatch firstRequestStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstRequest = new CountDownLatch(1);
+        List<Integer> handled = new ArrayList<>();
+        var queue = new BatchingActorLikeSingularUpdateQueue<Integer, Integer>(request -> {
+            if (request == 0) {
+                firstRequestStarted.countDown();
+                await(releaseFirstRequest);
+            }
+            handled.add(request);
+            return request * 10;
+        }, 16);
+
+        CompletableFuture<Integer> first = queue.submit(0);
+        firstRequestStarted.await(5, TimeUnit.SECONDS);
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            queued.add(queue.submit(i));
+        }
+        releaseFirstRequest.countDown();
+
+        assertEquals(0, (int) first.get(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 40; i++) {
+            assertEquals(i * 10, (int) queued.get(i - 1).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(41, queue.getRequestsHandled());
+        //the first activation handles 0 to 15, and two more handle the rest.
+        assertEquals(3, queue.getActivations());
+        for (int i = 0; i <= 40; i++) {
+            assertEquals(i, (int) handled.get(i));
+        }
+    }
+
+    @Test
+    public void failsOnlyTheFailingRequestInBatch() throws Exception {
+        var queue = new BatchingActorLikeSingularUpdateQueue<Integer, Integer>(request -> {
+            if (request == 2) {
+                throw new IllegalArgumentException("Unknown request " + request);
+            }
+            return request;
+        }, 8);
+
+        CompletableFuture<Integer> first = queue.submit(1);
+        CompletableFuture<Integer> failing = queue.submit(2);
+        CompletableFuture<Integer> third = queue.submit(3);
+
+        assertEquals(1, (int) first.get(5, TimeUnit.SECONDS));
+        assertEquals(3, (int) third.get(5, TimeUnit.SECONDS));
+        assertTrue(failing.isCompletedExceptionally());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
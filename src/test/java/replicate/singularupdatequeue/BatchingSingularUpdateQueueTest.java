@@ -0,0 +1,97 @@
+package replicate.singularupdatequeue;
+
+import org.junit.After;
+import org.junit.Test;
+import replicate.common.TestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchingSingularUpdateQueueTest {
+    BatchingSingularUpdateQueue<Integer, Integer> queue;
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    public void handlesRequestsQueuedWhileBusyInOneBatch() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        queue = BatchingSingularUpdateQueue.batching(requests -> {
+            batches.add(new ArrayList<>(requests));
+            firstBatchStarted.countDown();
+            await(releaseFirstBatch);
+            return requests.stream().map(r -> r * 10).toList();
+        }, 100, 16);
+        queue.start();
+
+        CompletableFuture<Integer> first = queue.submit(0);
+        firstBatchStarted.await(5, TimeUnit.SECONDS);
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            queued.add(queue.submit(i));
+        }
+        releaseFirstBatch.countDown();
+
+        assertEquals(0, (int) first.get(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 20; i++) {
+            assertEquals(i * 10, (int) queued.get(i - 1).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(0), batches.get(0));
+        assertEquals(16, batches.get(1).size());
+        assertEquals(3, batches.size());
+        assertEquals(21, queue.getRequestsHandled());
+        assertEquals(3, queue.getBatchesHandled());
+        assertEquals(20, queue.getMaxQueueDepth());
+        assertTrue(queue.getQueueWaitNanos() > 0);
+    }
+
+    @Test
+    public void failsOnlyTheFailingRequestWhenHandlingOneAtATime() throws Exception {
+        queue = new BatchingSingularUpdateQueue<>(request -> {
+            if (request == 2) {
+                throw new IllegalArgumentException("Unknown request " + request);
+            }
+            return request;
+        }, 10, 8);
+        queue.start();
+
+        CompletableFuture<Integer> first = queue.submit(1);
+        CompletableFuture<Integer> failing = queue.submit(2);
+        CompletableFuture<Integer> third = queue.submit(3);
+
+        assertEquals(1, (int) first.get(5, TimeUnit.SECONDS));
+        assertEquals(3, (int) third.get(5, TimeUnit.SECONDS));
+        assertTrue(failing.isCompletedExceptionally());
+        assertEquals(10, queue.getCapacity());
+    }
+
+    @Test
+    public void shutdownStopsThreadWaitingOnEmptyQueue() {
+        queue = new BatchingSingularUpdateQueue<>(request -> request, 10, 8);
+        queue.start();
+        TestUtils.waitUntilTrue(() -> queue.isRunning(), "Waiting for queue to start", Duration.ofSeconds(5));
+
+        queue.shutdown();
+
+        TestUtils.waitUntilTrue(() -> !queue.isAlive(), "Waiting for queue thread to stop", Duration.ofSeconds(5));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
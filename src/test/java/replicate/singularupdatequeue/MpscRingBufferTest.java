@@ -0,0 +1,108 @@
+package replicate.singularupdatequeue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void rejectsOffersWhenFull() {
+        var ring = new MpscRingBuffer<Integer>(4, WaitStrategy.BUSY_SPIN);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(0, ring.remainingCapacity());
+
+        assertEquals(0, (int) ring.poll());
+        assertTrue(ring.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, ring.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void describesItselfWithoutIterating() {
+        var ring = new MpscRingBuffer<Integer>(4, WaitStrategy.PARK);
+        ring.offer(1);
+        assertEquals("MpscRingBuffer[size=1, capacity=4, waitStrategy=PARK]", ring.toString());
+        var queue = BatchingSingularUpdateQueue.batchingOnRingBuffer(requests -> null, 4, 4, WaitStrategy.PARK);
+        queue.setName("update-queue");
+        assertEquals("update-queue[queued=0, capacity=4]", queue.toString());
+    }
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(128, new MpscRingBuffer<Integer>(100, WaitStrategy.YIELD).remainingCapacity());
+        assertEquals(64, new MpscRingBuffer<Integer>(64, WaitStrategy.YIELD).remainingCapacity());
+    }
+
+    @Test
+    public void keepsOrderOfEachProducerWithBusySpin() throws InterruptedException {
+        //spinning threads progress only when preempted on machines with fewer cores than threads.
+        takesFromConcurrentProducersInOrder(WaitStrategy.BUSY_SPIN, 500);
+    }
+
+    @Test
+    public void keepsOrderOfEachProducerWithYield() throws InterruptedException {
+        takesFromConcurrentProducersInOrder(WaitStrategy.YIELD, 20_000);
+    }
+
+    @Test
+    public void keepsOrderOfEachProducerWithPark() throws InterruptedException {
+        takesFromConcurrentProducersInOrder(WaitStrategy.PARK, 20_000);
+    }
+
+    @Test
+    public void parkedConsumerIsWokenUpByProducer() throws InterruptedException {
+        var ring = new MpscRingBuffer<Integer>(8, WaitStrategy.PARK);
+        CountDownLatch taken = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            try {
+                ring.take();
+                taken.countDown();
+            } catch (InterruptedException e) {
+            }
+        });
+        consumer.start();
+        Thread.sleep(50); //let the consumer park.
+
+        ring.put(1);
+
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+    }
+
+    private void takesFromConcurrentProducersInOrder(WaitStrategy waitStrategy, int messagesPerProducer) throws InterruptedException {
+        var ring = new MpscRingBuffer<long[]>(16, waitStrategy);
+        int noOfProducers = 3;
+        for (int p = 0; p < noOfProducers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < messagesPerProducer; i++) {
+                        ring.put(new long[]{producer, i});
+                    }
+                } catch (InterruptedException e) {
+                }
+            }).start();
+        }
+
+        long[] nextExpected = new long[noOfProducers];
+        for (int i = 0; i < noOfProducers * messagesPerProducer; i++) {
+            long[] message = ring.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Timed out after " + i + " messages", message);
+            int producer = (int) message[0];
+            assertEquals(nextExpected[producer], message[1]);
+            nextExpected[producer]++;
+        }
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,76 @@
+package replicate.singularupdatequeue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+/**
+ * Compares the time a request waits before the update thread handles it, with several threads submitting,
+ * for the queues Replica can run its update thread on: ArrayBlockingQueue and MpscRingBuffer with each wait strategy.
+ * The queues are created the way Replica creates them, with a batch handler.
+ * Run with: java -cp <test classpath> replicate.singularupdatequeue.UpdateQueueLatencyBenchmark [producers]
+ */
+public class UpdateQueueLatencyBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final int MAX_DRAIN_SIZE = 64;
+    private static final int WARMUP = 200_000;
+    private static final int REQUESTS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        System.out.println(producers + " producers, " + REQUESTS + " requests");
+
+        run("ArrayBlockingQueue", producers, handler -> BatchingSingularUpdateQueue.batching(handler, CAPACITY, MAX_DRAIN_SIZE));
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            run("MpscRingBuffer " + waitStrategy, producers, handler -> BatchingSingularUpdateQueue.batchingOnRingBuffer(handler, CAPACITY, MAX_DRAIN_SIZE, waitStrategy));
+        }
+    }
+
+    private static void run(String name, int producers, Function<BatchHandler<Long, Void>, BatchingSingularUpdateQueue<Long, Void>> queueFactory) throws InterruptedException {
+        submit(queueFactory, producers, WARMUP);
+        long start = System.nanoTime();
+        long[] latencies = submit(queueFactory, producers, REQUESTS);
+        long elapsedNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-24s p50: %6d ns  p99: %8d ns  p99.9: %9d ns  %,d requests/s%n", name,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                (long) (REQUESTS / (elapsedNanos / 1e9)));
+    }
+
+    //each request is its submit time. Latencies are written only by the update thread.
+    private static long[] submit(Function<BatchHandler<Long, Void>, BatchingSingularUpdateQueue<Long, Void>> queueFactory, int producers, int requests) throws InterruptedException {
+        long[] latencies = new long[requests];
+        int[] handled = new int[1];
+        CountDownLatch allHandled = new CountDownLatch(1);
+        BatchingSingularUpdateQueue<Long, Void> queue = queueFactory.apply((List<Long> batch) -> {
+            long now = System.nanoTime();
+            for (Long submittedAt : batch) {
+                latencies[handled[0]++] = now - submittedAt;
+            }
+            if (handled[0] == requests) {
+                allHandled.countDown();
+            }
+            return null;
+        });
+        queue.start();
+
+        int requestsPerProducer = requests / producers;
+        for (int p = 0; p < producers; p++) {
+            int count = p == producers - 1 ? requests - requestsPerProducer * (producers - 1) : requestsPerProducer;
+            new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    queue.submit(System.nanoTime());
+                }
+            }).start();
+        }
+        allHandled.await();
+        queue.shutdown();
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,96 @@
+package replicate.singularupdatequeue.example;
+
+import replicate.singularupdatequeue.ActorLikeSingularUpdateQueue;
+import replicate.singularupdatequeue.BatchingActorLikeSingularUpdateQueue;
+import replicate.singularupdatequeue.BatchingSingularUpdateQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the throughput of crediting an account from several threads, for the ways of
+ * updating the balance from one thread at a time: a synchronized account, SingleThreadedAccount,
+ * BatchingSingularUpdateQueue, and ActorLikeSingularUpdateQueue handling one and a batch of requests per activation.
+ * Run with: java -cp <test classpath> replicate.singularupdatequeue.example.AccountBenchmark [threads] [maxBatchSize]
+ */
+public class AccountBenchmark {
+    private static final int CAPACITY = 100;
+    private static final int WARMUP = 100_000;
+    private static final int CREDITS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int maxBatchSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        System.out.println(threads + " threads, " + CREDITS + " credits");
+
+        SynchronizedAccount synchronizedAccount = new SynchronizedAccount(0);
+        run("SynchronizedAccount", threads, amount -> CompletableFuture.completedFuture(synchronizedAccount.credit(amount)));
+
+        SingleThreadedAccount singleThreadedAccount = new SingleThreadedAccount(0);
+        run("SingleThreadedAccount", threads, singleThreadedAccount::credit);
+
+        Balance batchBalance = new Balance();
+        BatchingSingularUpdateQueue<Request, Response> batchingQueue = new BatchingSingularUpdateQueue<>(batchBalance::credit, CAPACITY, maxBatchSize);
+        batchingQueue.start();
+        run("SingularUpdateQueue batch", threads, amount -> batchingQueue.submit(new Request(amount, RequestType.CREDIT)));
+        batchingQueue.shutdown();
+
+        Balance actorBalance = new Balance();
+        ActorLikeSingularUpdateQueue<Request, Response> actor = new ActorLikeSingularUpdateQueue<>(actorBalance::credit);
+        run("ActorLike one at a time", threads, amount -> actor.submit(new Request(amount, RequestType.CREDIT)));
+
+        Balance batchingActorBalance = new Balance();
+        BatchingActorLikeSingularUpdateQueue<Request, Response> batchingActor = new BatchingActorLikeSingularUpdateQueue<>(batchingActorBalance::credit, maxBatchSize);
+        run("ActorLike batch", threads, amount -> batchingActor.submit(new Request(amount, RequestType.CREDIT)));
+        System.out.printf("%-28s %,d activations%n", "", batchingActor.getActivations());
+
+        //SingleThreadedAccount's thread and the actors' executor are never stopped.
+        System.exit(0);
+    }
+
+    private static void run(String name, int threads, IntFunction<CompletableFuture<?>> credit) throws Exception {
+        credit(credit, threads, WARMUP);
+        long start = System.nanoTime();
+        credit(credit, threads, CREDITS);
+        long elapsedNanos = System.nanoTime() - start;
+        System.out.printf("%-28s %,12d credits/s%n", name, (long) (CREDITS / (elapsedNanos / 1e9)));
+    }
+
+    //requests from one thread are handled in order, so each thread waits only for its last credit.
+    private static void credit(IntFunction<CompletableFuture<?>> credit, int threads, int credits) throws Exception {
+        List<CompletableFuture<?>> lastCredits = new ArrayList<>();
+        List<Thread> creditingThreads = new ArrayList<>();
+        int creditsPerThread = credits / threads;
+        for (int t = 0; t < threads; t++) {
+            CompletableFuture<Object> lastCredit = new CompletableFuture<>();
+            lastCredits.add(lastCredit);
+            Thread thread = new Thread(() -> {
+                CompletableFuture<?> future = null;
+                for (int i = 0; i < creditsPerThread; i++) {
+                    future = credit.apply(1);
+                }
+                future.whenComplete((r, e) -> lastCredit.complete(r));
+            });
+            creditingThreads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : creditingThreads) {
+            thread.join();
+        }
+        for (CompletableFuture<?> lastCredit : lastCredits) {
+            lastCredit.get();
+        }
+    }
+
+    //the same credit as SingleThreadedAccount, for the queues created here.
+    static class Balance {
+        private int balance;
+
+        Response credit(Request request) {
+            balance += request.amount;
+            return Response.succecss(balance);
+        }
+    }
+}
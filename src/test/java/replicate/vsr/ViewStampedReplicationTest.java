@@ -4,6 +4,7 @@ import org.junit.Test;
 import replicate.common.ClusterTest;
 import replicate.common.NetworkClient;
 import replicate.common.TestUtils;
+import replicate.common.WireFormat;
 import replicate.net.InetAddressAndPort;
 import replicate.twophaseexecution.messages.ExecuteCommandRequest;
 import replicate.twophaseexecution.messages.ExecuteCommandResponse;
@@ -17,6 +18,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ViewStampedReplicationTest extends ClusterTest<ViewStampedReplication> {
 
@@ -68,6 +70,52 @@ public class ViewStampedReplicationTest extends ClusterTest<ViewStampedReplicati
         }, "Waiting for new primary to be elected", Duration.ofSeconds(5));
     }
 
+    @Test
+    public void changesViewWithCompressedPeerMessages() throws IOException {
+        super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                        (name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses) -> new ViewStampedReplication(name, config.withCompressionThreshold(64), clock, clientConnectionAddress, peerConnectionAddress, peerAddresses));
+
+        var primaryAddress = nodes.get("athens").getPrimaryAddress();
+        var primary = getPrimaryNode(primaryAddress);
+
+        var client = new NetworkClient();
+        var setValueCommand = new SetValueCommand("title", "Microservices");
+        var response
+                = client.sendAndReceive(new ExecuteCommandRequest(setValueCommand.serialize()), primaryAddress, ExecuteCommandResponse.class);
+        assertEquals(Optional.of("Microservices"), response.getResponse());
+
+        List<ViewStampedReplication> backUpNodes = getBackUpNodes(primaryAddress);
+        primary.shutdown();
+
+        TestUtils.waitUntilTrue(()->{
+            return backUpNodes.get(0).getViewNumber() == 1 && backUpNodes.get(1).getViewNumber() == 1;
+        }, "Waiting for new primary to be elected", Duration.ofSeconds(5));
+        //DoViewChange and StartView carry the log.
+        assertTrue(backUpNodes.stream().mapToLong(n -> n.getFrameCompressor().getFramesDecompressed()).sum() > 0);
+    }
+
+    @Test
+    public void changesViewWithProtobufPeerMessages() throws IOException {
+        super.nodes = TestUtils.startCluster(Arrays.asList("athens", "byzantium", "cyrene"),
+                        (name, config, clock, clientConnectionAddress, peerConnectionAddress, peerAddresses) -> new ViewStampedReplication(name, config.withWireFormat(WireFormat.PROTOBUF), clock, clientConnectionAddress, peerConnectionAddress, peerAddresses));
+
+        var primaryAddress = nodes.get("athens").getPrimaryAddress();
+        var primary = getPrimaryNode(primaryAddress);
+
+        var client = new NetworkClient();
+        var setValueCommand = new SetValueCommand("title", "Microservices");
+        var response
+                = client.sendAndReceive(new ExecuteCommandRequest(setValueCommand.serialize()), primaryAddress, ExecuteCommandResponse.class);
+        assertEquals(Optional.of("Microservices"), response.getResponse());
+
+        List<ViewStampedReplication> backUpNodes = getBackUpNodes(primaryAddress);
+        primary.shutdown();
+
+        TestUtils.waitUntilTrue(()->{
+            return backUpNodes.get(0).getViewNumber() == 1 && backUpNodes.get(1).getViewNumber() == 1;
+        }, "Waiting for new primary to be elected", Duration.ofSeconds(5));
+    }
+
     private List<ViewStampedReplication> getBackUpNodes(InetAddressAndPort primaryAddress) {
         return this.nodes.values().stream().filter(n -> !n.getPeerConnectionAddress().equals(primaryAddress)).collect(Collectors.toList());
     }